@@ -1,24 +1,30 @@
 #include <jni.h>
 #include <string>
+#include <vector>
 #include <stdio.h>
+#include <string.h>
+#include <limits.h>
+#include <sys/stat.h>
 #include <android/log.h>
 
 // LOGCAT
 #define  LOG_TAG    "RootCheckerNative"
 #define  LOGD(...)  if (DEBUG) __android_log_print(ANDROID_LOG_INFO,LOG_TAG,__VA_ARGS__);
 
-/* Set to 1 to enable debug log traces. */
-static int DEBUG = 1;
+/* Set to 1 to enable debug log traces, switched from java through RootCheckLog.setLogger */
+static int DEBUG = 0;
 
 /*****************************************************************************
  * Description: Sets if we should log debug messages
  *
  * Parameters: env - Java environment pointer
- *      thiz - javaobject
- * 	bool - true to log debug messages
+ *      clazz - the FileProbe class
+ * 	debug - true to log debug messages
  *
  *****************************************************************************/
-void Java_com_leirens_jens_rootcheckernative_MainActivity_setLogDebugMessages( JNIEnv* env, jobject thiz, jboolean debug)
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_leirens_jens_rootchecklib_FileProbe_setLogDebugMessages(JNIEnv *env, jclass clazz, jboolean debug)
 {
     if (debug){
         DEBUG = 1;
@@ -29,44 +35,66 @@ void Java_com_leirens_jens_rootcheckernative_MainActivity_setLogDebugMessages( J
 }
 
 /*****************************************************************************
- * Description: Checks for root binaries
+ * Description: Checks every directory x name combination for an existing file
  *
  * Parameters: env - Java environment pointer
- *      thiz - javaobject
+ *      clazz - the FileProbe class
+ *      directories - the directories to look in
+ *      names - the file names to look for in every directory
  *
- * Return an array of Ints with the length of the paths
+ * Return a bitset with one bit per combination, bit (directory * names + name)
+ * is set when the file exists
  *
  *****************************************************************************/
 extern "C"
-JNIEXPORT jintArray JNICALL
-Java_com_leirens_jens_rootchecklib_RootChecker_checkForRootNative(JNIEnv *env, jobject instance, jobjectArray paths) {
+JNIEXPORT jbyteArray JNICALL
+Java_com_leirens_jens_rootchecklib_FileProbe_probeFiles(JNIEnv *env, jclass clazz, jobjectArray directories, jobjectArray names) {
+
+    const jsize directoryCount = env->GetArrayLength(directories);
+    const jsize nameCount = env->GetArrayLength(names);
+    const jsize byteCount = (directoryCount * nameCount + 7) / 8;
 
-    const jsize length = env->GetArrayLength(paths);
-    jintArray binaries = env->NewIntArray(length);
-    jint *elements = env->GetIntArrayElements(binaries, NULL);
+    jbyteArray result = env->NewByteArray(byteCount);
+    if (result == NULL) {
+        return NULL;
+    }
+    std::vector<jbyte> bits(byteCount, 0);
 
+    // convert every name once instead of once per path
+    std::vector<std::string> nameStrings;
+    for (int n = 0; n < nameCount; n++) {
+        jstring name = (jstring) env->GetObjectArrayElement(names, n);
+        const char *nameChars = env->GetStringUTFChars(name, 0);
+        nameStrings.push_back(nameChars);
+        env->ReleaseStringUTFChars(name, nameChars);
+        env->DeleteLocalRef(name);
+    }
 
-    int stringCount = (env)->GetArrayLength(paths);
+    char path[PATH_MAX];
+    struct stat fileStat;
+    for (int d = 0; d < directoryCount; d++) {
+        jstring directory = (jstring) env->GetObjectArrayElement(directories, d);
+        const char *directoryChars = env->GetStringUTFChars(directory, 0);
+        size_t directoryLength = strlen(directoryChars);
+        const char *separator = directoryLength > 0 && directoryChars[directoryLength - 1] == '/' ? "" : "/";
 
-    for (int i=0; i<stringCount; i++) {
-        jstring string = (jstring) (env)->GetObjectArrayElement(paths, i);
-        const char *pathString = (env)->GetStringUTFChars(string, 0);
+        for (int n = 0; n < nameCount; n++) {
+            snprintf(path, sizeof(path), "%s%s%s", directoryChars, separator, nameStrings[n].c_str());
 
-        FILE *file;
-        if ((file = fopen(pathString, "r")))
-        {
-            LOGD("LOOKING FOR BINARY: %s PRESENT",pathString);
-            fclose(file);
-            elements[i] = 1 ;
-        } else {
-            LOGD("LOOKING FOR BINARY: %s Absent",pathString);
-            elements[i] = 0 ;
+            // stat only needs search permission on the directory, the file itself does not have to be readable
+            if (stat(path, &fileStat) == 0) {
+                LOGD("LOOKING FOR BINARY: %s PRESENT", path);
+                int bit = d * nameCount + n;
+                bits[bit >> 3] |= 1 << (bit & 7);
+            } else {
+                LOGD("LOOKING FOR BINARY: %s Absent", path);
+            }
         }
 
-
-        (env)->ReleaseStringUTFChars(string, pathString);
+        env->ReleaseStringUTFChars(directory, directoryChars);
+        env->DeleteLocalRef(directory);
     }
-    env ->ReleaseIntArrayElements(binaries, elements, NULL);
-    return binaries ;
 
-}
\ No newline at end of file
+    env->SetByteArrayRegion(result, 0, byteCount, bits.data());
+    return result;
+}
@@ -9,10 +9,20 @@ import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.leirens.jens.rootchecklib.RootCheckCallback;
+import com.leirens.jens.rootchecklib.RootCheckResult;
+import com.leirens.jens.rootchecklib.RootCheckTask;
 import com.leirens.jens.rootchecklib.RootChecker;
+import com.leirens.jens.rootchecklib.SafetyNet.AttestationTask;
+import com.leirens.jens.rootchecklib.SafetyNet.SafetyNetCallback;
 import com.leirens.jens.rootchecklib.SafetyNet.SafetyNetHelper;
+import com.leirens.jens.rootchecklib.SafetyNet.SafetyNetResponse;
+import com.leirens.jens.rootchecklib.SafetyNet.SafetyNetVerdictCache;
 import com.squareup.picasso.Picasso;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
@@ -34,13 +44,17 @@ public class MainActivity extends AppCompatActivity {
     @BindView(R.id.rootedCheckImage)
     ImageView checkedImage;
 
-    private SafetyNetHelper safetyNetHelper = new SafetyNetHelper();
+    private SafetyNetHelper safetyNetHelper;
+    private RootCheckTask rootCheckTask;
+    private AttestationTask attestationTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         ButterKnife.bind(this);
+        safetyNetHelper = new SafetyNetHelper(getApplicationContext(), BuildConfig.API_KEY)
+                .setVerdictCache(new SafetyNetVerdictCache(getApplicationContext(), TimeUnit.HOURS.toMillis(1)));
         spinner.setVisibility(View.VISIBLE);
         check.setVisibility(View.GONE);
         checkRoot();
@@ -52,20 +66,8 @@ public class MainActivity extends AppCompatActivity {
                     check.setVisibility(View.GONE);
                     checkRoot();
                 } else {
-                    if (safetyNetHelper.getSafetyNetResponse() != null) {
-                        tvResult.setText(safetyNetHelper.getSafetyNetResponse().toString());
-                        checkedImage.setVisibility(View.VISIBLE);
-                        if (safetyNetHelper.getSafetyNetResponse().isCtsProfileMatch()) {
-                            Picasso.with(getApplicationContext()).load(R.drawable.greencheck).into(checkedImage);
-                        } else {
-                            Picasso.with(getApplicationContext()).load(R.drawable.redcross).into(checkedImage);
-                        }
-
-                    } else {
-                        check.setVisibility(View.VISIBLE);
-                        tvResult.setText("");
-                        checkedImage.setVisibility(View.GONE);
-                    }
+                    cancelRootCheck();
+                    showSafetyNetResponse(safetyNetHelper.getSafetyNetResponse());
                 }
             }
 
@@ -81,12 +83,39 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        cancelRootCheck();
+        if (attestationTask != null) {
+            attestationTask.cancel(false);
+        }
+        super.onDestroy();
+    }
+
+    private void cancelRootCheck() {
+        if (rootCheckTask != null) {
+            rootCheckTask.cancel();
+            rootCheckTask = null;
+        }
+        spinner.setVisibility(View.GONE);
+    }
+
     private void checkRoot() {
+        cancelRootCheck();
+        spinner.setVisibility(View.VISIBLE);
         RootChecker rootChecker = new RootChecker(getApplicationContext());
-        boolean isRooted =  rootChecker.isDeviceRooted();
+        rootCheckTask = rootChecker.isDeviceRootedAsync(new RootCheckCallback() {
+            @Override
+            public void onResult(RootCheckResult result) {
+                showRootResult(result.isRooted(), result.getReasons());
+            }
+        });
+    }
+
+    private void showRootResult(boolean isRooted, List<String> reasons) {
         StringBuilder sb = new StringBuilder();
 
-        for(String s : rootChecker.getReasons()){
+        for(String s : reasons){
             sb.append("\n");
             sb.append(s);
         }
@@ -101,9 +130,41 @@ public class MainActivity extends AppCompatActivity {
 
     }
 
+    private void showSafetyNetResponse(SafetyNetResponse response) {
+        if (response != null) {
+            tvResult.setText(response.toString());
+            checkedImage.setVisibility(View.VISIBLE);
+            if (response.isCtsProfileMatch()) {
+                Picasso.with(getApplicationContext()).load(R.drawable.greencheck).into(checkedImage);
+            } else {
+                Picasso.with(getApplicationContext()).load(R.drawable.redcross).into(checkedImage);
+            }
+
+        } else {
+            check.setVisibility(View.VISIBLE);
+            tvResult.setText("");
+            checkedImage.setVisibility(View.GONE);
+        }
+    }
+
     @OnClick(R.id.check)
     public void sendRequest() {
-        safetyNetHelper.sendRequest(this,BuildConfig.API_KEY);
+        spinner.setVisibility(View.VISIBLE);
+        attestationTask = safetyNetHelper.attest(new SafetyNetCallback() {
+            @Override
+            public void onResponse(SafetyNetResponse response) {
+                spinner.setVisibility(View.GONE);
+                if (tabLayout.getSelectedTabPosition() == 1) {
+                    check.setVisibility(View.GONE);
+                    showSafetyNetResponse(response);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                spinner.setVisibility(View.GONE);
+            }
+        });
     }
 
 }
@@ -0,0 +1,75 @@
+package com.leirens.jens.rootchecklib.benchmark;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.RootCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.RootCheckRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every check of the default registry on its own, against a clean and a rooted fake device.
+ * Every invocation uses a new {@link CheckContext}, like a scan does, so the shared binary probe is part of the
+ * measurement of the binary checks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckBenchmark {
+
+    @Param({"clean", "rooted"})
+    public String device;
+
+    @Param({
+            CheckIds.ROOT_MANAGEMENT_APPS,
+            CheckIds.DANGEROUS_APPS,
+            CheckIds.ROOT_CLOAKING_APPS,
+            CheckIds.SU_PATH,
+            CheckIds.SU_BINARY,
+            CheckIds.MAGISK_BINARY,
+            CheckIds.BUSYBOX_BINARY,
+            CheckIds.RW_PATHS,
+            CheckIds.DANGEROUS_PROPS,
+            CheckIds.TEST_KEYS,
+            CheckIds.DEV_KEYS,
+            CheckIds.USB_DEBUGGING,
+            CheckIds.EMULATOR,
+            CheckIds.NATIVE_SU_BINARY
+    })
+    public String checkId;
+
+    private FakeDeviceEnvironment environment;
+    private RootCheck check;
+
+    @Setup
+    public void setUp() {
+        RootCheckLog.setLogger(RootCheckLog.NONE);
+        environment = "rooted".equals(device) ? FakeDeviceEnvironment.rooted() : FakeDeviceEnvironment.clean();
+        check = RootCheckRegistry.createDefault().get(checkId);
+        if (check == null) {
+            throw new IllegalStateException("Unknown check " + checkId);
+        }
+    }
+
+    @Benchmark
+    public CheckResult run() {
+        return check.run(new CheckContext(environment));
+    }
+}
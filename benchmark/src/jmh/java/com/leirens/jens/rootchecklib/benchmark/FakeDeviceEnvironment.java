@@ -0,0 +1,337 @@
+package com.leirens.jens.rootchecklib.benchmark;
+
+import com.leirens.jens.rootchecklib.Const;
+import com.leirens.jens.rootchecklib.DeviceEnvironment;
+import com.leirens.jens.rootchecklib.FileProbe;
+import com.leirens.jens.rootchecklib.SystemPropertyReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A device in memory, so the checks can be measured on the JVM without android.
+ * Every lookup is a single hash lookup, so the time and the allocations that are measured are mostly the ones of the library.
+ */
+public class FakeDeviceEnvironment implements DeviceEnvironment {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private String buildTags = "release-keys";
+    private String board = "msm8998";
+    private String device = "walleye";
+    private String hardware = "walleye";
+    private String model = "Pixel 2";
+    private String product = "walleye";
+    private boolean usbDebugging;
+    private final Set<String> packages = new HashSet<>();
+    private long packagesGeneration;
+    private final Map<String, String> env = new HashMap<>();
+    private final Set<String> files = new HashSet<>();
+    // the names in every directory, by directory with a trailing slash
+    private final Map<String, Set<String>> directories = new HashMap<>();
+    private final Set<String> unreadableDirectories = new HashSet<>();
+    // every change moves the clock, so the modification times always differ
+    private final Map<String, Long> modified = new HashMap<>();
+    private long clock = 1;
+    private byte[] mounts = new byte[0];
+    private final Map<String, String> properties = new HashMap<>();
+    private final Map<String, String> commandOutput = new HashMap<>();
+
+    private final SystemPropertyReader propertyReader = new SystemPropertyReader() {
+        @Override
+        public String get(String key) {
+            return properties.get(key);
+        }
+    };
+
+    /**
+     * @return - a production device with a realistic amount of mounts and packages, but no root
+     */
+    public static FakeDeviceEnvironment clean() {
+        FakeDeviceEnvironment environment = new FakeDeviceEnvironment();
+        environment.setEnv("PATH", "/sbin:/system/sbin:/system/bin:/system/xbin:/vendor/bin");
+        // like a recent device, the app can not list these
+        environment.setUnreadable("/sbin/");
+        environment.setUnreadable("/data/");
+        environment.setUnreadable("/data/local/");
+        environment.setUnreadable("/cache/");
+        for (int i = 0; i < 250; i++) {
+            environment.addFile("/system/bin/tool" + i);
+        }
+        for (int i = 0; i < 40; i++) {
+            environment.addFile("/system/xbin/xtool" + i);
+        }
+        for (int i = 0; i < 300; i++) {
+            environment.addFile("/dev/node" + i);
+        }
+        environment.setMounts(createMounts(false));
+        for (int i = 0; i < 300; i++) {
+            environment.addPackage("com.example.app" + i);
+        }
+        environment.setProperty("ro.debuggable", "0");
+        environment.setProperty("ro.secure", "1");
+        return environment;
+    }
+
+    /**
+     * @return - the clean device with su, magisk, busybox, root apps and a writable /system
+     */
+    public static FakeDeviceEnvironment rooted() {
+        FakeDeviceEnvironment environment = clean();
+        environment.setBuildTags("test-keys");
+        environment.setUsbDebugging(true);
+        environment.addFile("/system/xbin/su");
+        environment.addFile("/sbin/su");
+        environment.addFile("/sbin/magisk");
+        environment.addFile("/system/xbin/busybox");
+        environment.addPackage(Const.knownRootAppsPackages[0]);
+        environment.addPackage(Const.knownDangerousAppsPackages[0]);
+        environment.addPackage(Const.knownRootCloakingPackages[0]);
+        environment.setMounts(createMounts(true));
+        environment.setProperty("ro.debuggable", "1");
+        environment.setProperty("ro.secure", "0");
+        environment.setCommandOutput("uid=0(root) gid=0(root) context=u:r:magisk:s0\n", "su", "-c", "id");
+        return environment;
+    }
+
+    /**
+     * Builds a mounts file like the one of a recent device, which has a few hundred lines
+     */
+    private static byte[] createMounts(boolean writableSystem) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("/dev/block/dm-0 /system ext4 ").append(writableSystem ? "rw" : "ro").append(",seclabel,relatime 0 0\n");
+        sb.append("/dev/block/dm-1 /vendor ext4 ro,seclabel,relatime 0 0\n");
+        sb.append("tmpfs /dev tmpfs rw,seclabel,nosuid,relatime,mode=755 0 0\n");
+        sb.append("proc /proc proc rw,relatime,gid=3009,hidepid=2 0 0\n");
+        sb.append("/dev/block/sda45 /data f2fs rw,lazytime,seclabel,nosuid,nodev,noatime 0 0\n");
+        for (int i = 0; i < 250; i++) {
+            sb.append("/dev/block/loop").append(i).append(" /apex/com.example.module").append(i)
+                    .append("@1 ext4 ro,dirsync,seclabel,nodev,noatime 0 0\n");
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    public FakeDeviceEnvironment setBuildTags(String buildTags) {
+        this.buildTags = buildTags;
+        return this;
+    }
+
+    public FakeDeviceEnvironment setUsbDebugging(boolean usbDebugging) {
+        this.usbDebugging = usbDebugging;
+        return this;
+    }
+
+    public FakeDeviceEnvironment addPackage(String packageName) {
+        packages.add(packageName);
+        packagesGeneration++;
+        return this;
+    }
+
+    public FakeDeviceEnvironment removePackage(String packageName) {
+        packages.remove(packageName);
+        packagesGeneration++;
+        return this;
+    }
+
+    public FakeDeviceEnvironment setEnv(String name, String value) {
+        env.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param path - the complete path of a file that exists on the fake device
+     * @return - this environment
+     */
+    public FakeDeviceEnvironment addFile(String path) {
+        files.add(path);
+        String directory = directoryOf(path);
+        Set<String> names = directories.get(directory);
+        if (names == null) {
+            names = new HashSet<>();
+            directories.put(directory, names);
+        }
+        names.add(path.substring(directory.length()));
+        touch(path);
+        return this;
+    }
+
+    public FakeDeviceEnvironment removeFile(String path) {
+        files.remove(path);
+        String directory = directoryOf(path);
+        Set<String> names = directories.get(directory);
+        if (names != null) {
+            names.remove(path.substring(directory.length()));
+        }
+        touch(path);
+        return this;
+    }
+
+    /**
+     * @param directory - a directory with a trailing slash that can not be listed, its files can still be checked
+     * @return - this environment
+     */
+    public FakeDeviceEnvironment setUnreadable(String directory) {
+        unreadableDirectories.add(directory);
+        return this;
+    }
+
+    private static String directoryOf(String path) {
+        return path.substring(0, path.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Updates the modification time of the file and of its directory, with and without a trailing slash
+     */
+    private void touch(String path) {
+        clock++;
+        modified.put(path, clock);
+        String directory = directoryOf(path);
+        modified.put(directory, clock);
+        if (directory.length() > 1) {
+            modified.put(directory.substring(0, directory.length() - 1), clock);
+        }
+    }
+
+    public FakeDeviceEnvironment setMounts(byte[] mounts) {
+        this.mounts = mounts;
+        return this;
+    }
+
+    public FakeDeviceEnvironment setProperty(String key, String value) {
+        properties.put(key, value);
+        return this;
+    }
+
+    public FakeDeviceEnvironment setCommandOutput(String output, String... command) {
+        commandOutput.put(join(command), output);
+        return this;
+    }
+
+    @Override
+    public String getBuildTags() {
+        return buildTags;
+    }
+
+    @Override
+    public String getBoard() {
+        return board;
+    }
+
+    @Override
+    public String getDevice() {
+        return device;
+    }
+
+    @Override
+    public String getHardware() {
+        return hardware;
+    }
+
+    @Override
+    public String getModel() {
+        return model;
+    }
+
+    @Override
+    public String getProduct() {
+        return product;
+    }
+
+    @Override
+    public boolean isUsbDebuggingEnabled() {
+        return usbDebugging;
+    }
+
+    @Override
+    public boolean isPackageInstalled(String packageName) {
+        return packages.contains(packageName);
+    }
+
+    @Override
+    public long getPackagesGeneration() {
+        return packagesGeneration;
+    }
+
+    @Override
+    public Collection<String> getInstalledPackages() {
+        return Collections.unmodifiableSet(packages);
+    }
+
+    @Override
+    public String getEnv(String name) {
+        return env.get(name);
+    }
+
+    @Override
+    public boolean fileExists(String path) {
+        return files.contains(path);
+    }
+
+    @Override
+    public String[] listDirectory(String path) {
+        String directory = path.endsWith("/") ? path : path + "/";
+        if (unreadableDirectories.contains(directory)) {
+            return null;
+        }
+        Set<String> names = directories.get(directory);
+        return names != null ? names.toArray(new String[names.size()]) : new String[0];
+    }
+
+    @Override
+    public long lastModified(String path) {
+        Long time = modified.get(path);
+        return time != null ? time : 0;
+    }
+
+    @Override
+    public FileProbe probeFiles(String[] directories, String[] names) {
+        return FileProbe.probe(directories, names, this);
+    }
+
+    @Override
+    public InputStream openMounts() {
+        return new ByteArrayInputStream(mounts);
+    }
+
+    @Override
+    public SystemPropertyReader getSystemProperties() {
+        return propertyReader;
+    }
+
+    @Override
+    public String runCommand(String... command) throws IOException {
+        String output = commandOutput.get(join(command));
+        if (output == null) {
+            throw new IOException("Cannot run program \"" + command[0] + "\": error=2, No such file or directory");
+        }
+        return output;
+    }
+
+    @Override
+    public String runInShell(String commandLine) throws IOException {
+        String output = commandOutput.get(commandLine);
+        if (output == null) {
+            throw new IOException(commandLine + ": not found");
+        }
+        return output;
+    }
+
+    private static String join(String[] command) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : command) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+}
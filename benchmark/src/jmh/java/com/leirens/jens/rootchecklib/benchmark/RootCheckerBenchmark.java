@@ -0,0 +1,66 @@
+package com.leirens.jens.rootchecklib.benchmark;
+
+import com.leirens.jens.rootchecklib.CheckEngine;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.RootCheckRegistry;
+import com.leirens.jens.rootchecklib.RootChecker;
+import com.leirens.jens.rootchecklib.ScanMode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a complete scan through {@link RootChecker#isDeviceRooted()}, including the scheduling of the checks
+ * on the executor, against a clean and a rooted fake device. The cache is not used, so every scan runs every check,
+ * except in the incremental scan which only computes fingerprints after the first scan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RootCheckerBenchmark {
+
+    @Param({"clean", "rooted"})
+    public String device;
+
+    private RootChecker rootChecker;
+    private RootChecker incrementalRootChecker;
+
+    @Setup
+    public void setUp() {
+        RootCheckLog.setLogger(RootCheckLog.NONE);
+        FakeDeviceEnvironment environment = "rooted".equals(device)
+                ? FakeDeviceEnvironment.rooted() : FakeDeviceEnvironment.clean();
+        rootChecker = new RootChecker(environment, RootCheckRegistry.createDefault(), CheckEngine.getDefaultExecutor());
+        incrementalRootChecker = new RootChecker(environment, RootCheckRegistry.createDefault(),
+                CheckEngine.getDefaultExecutor()).setIncremental(true);
+    }
+
+    @Benchmark
+    public boolean isDeviceRooted() {
+        return rootChecker.isDeviceRooted();
+    }
+
+    @Benchmark
+    public boolean isDeviceRootedFailFast() {
+        return rootChecker.isDeviceRooted(ScanMode.FAIL_FAST);
+    }
+
+    @Benchmark
+    public boolean isDeviceRootedIncremental() {
+        return incrementalRootChecker.isDeviceRooted();
+    }
+}
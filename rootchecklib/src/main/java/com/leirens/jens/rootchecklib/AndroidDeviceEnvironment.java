@@ -0,0 +1,174 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.provider.Settings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * The environment of the device the library is running on
+ */
+public class AndroidDeviceEnvironment implements DeviceEnvironment {
+
+    private static final String[] MOUNTS_FILES = {"/proc/self/mounts", "/proc/mounts"};
+
+    private final Context context;
+    private final ProcessRunner processRunner;
+    private final ShellSession shell;
+    private final SystemPropertyReader systemProperties;
+
+    public AndroidDeviceEnvironment(Context context) {
+        this(context, ProcessRunner.getDefault());
+    }
+
+    /**
+     * @param context - the context used for the package and settings checks
+     * @param processRunner - runs the external commands, like su -c id, under its deadline
+     */
+    public AndroidDeviceEnvironment(Context context, ProcessRunner processRunner) {
+        this(context, processRunner, ShellSession.getDefault());
+    }
+
+    /**
+     * @param context - the context used for the package and settings checks
+     * @param processRunner - runs the external commands, like su -c id, under its deadline
+     * @param shell - runs the short commands, like mount and getprop, without a new process
+     */
+    public AndroidDeviceEnvironment(Context context, ProcessRunner processRunner, ShellSession shell) {
+        this.context = context;
+        this.processRunner = processRunner;
+        this.shell = shell;
+        this.systemProperties = shell == ShellSession.getDefault()
+                ? SystemPropertyReader.getDefault() : SystemPropertyReader.create(shell);
+    }
+
+    public Context getContext() {
+        return context;
+    }
+
+    @Override
+    public String getBuildTags() {
+        return Build.TAGS;
+    }
+
+    @Override
+    public String getBoard() {
+        return Build.BOARD;
+    }
+
+    @Override
+    public String getDevice() {
+        return Build.DEVICE;
+    }
+
+    @Override
+    public String getHardware() {
+        return Build.HARDWARE;
+    }
+
+    @Override
+    public String getModel() {
+        return Build.MODEL;
+    }
+
+    @Override
+    public String getProduct() {
+        return Build.PRODUCT;
+    }
+
+    @Override
+    public boolean isUsbDebuggingEnabled() {
+        //If it is enabled, adb == 1, otherwise adb == 0
+        return Settings.Secure.getInt(context.getContentResolver(), Settings.Secure.ADB_ENABLED, 0) == 1;
+    }
+
+    /**
+     * Uses the {@link InstalledPackageIndex}, so the installed packages are only enumerated once.
+     * Only when they could not be enumerated the PackageManager is asked for the package.
+     */
+    @Override
+    public boolean isPackageInstalled(String packageName) {
+        InstalledPackageIndex index = InstalledPackageIndex.get(context);
+        if (index.isLoaded()) {
+            return index.isInstalled(packageName);
+        }
+        try {
+            context.getPackageManager().getPackageInfo(packageName, 0);
+            return true;
+        } catch (PackageManager.NameNotFoundException e) {
+            // Exception thrown, package is not installed into the system
+            return false;
+        }
+    }
+
+    @Override
+    public long getPackagesGeneration() {
+        InstalledPackageIndex index = InstalledPackageIndex.get(context);
+        return index.isLoaded() ? index.getGeneration() : -1;
+    }
+
+    @Override
+    public Collection<String> getInstalledPackages() {
+        InstalledPackageIndex index = InstalledPackageIndex.get(context);
+        return index.isLoaded() ? index.getPackages() : null;
+    }
+
+    @Override
+    public String getEnv(String name) {
+        return System.getenv(name);
+    }
+
+    @Override
+    public boolean fileExists(String path) {
+        return new File(path).exists();
+    }
+
+    @Override
+    public String[] listDirectory(String path) {
+        return new File(path).list();
+    }
+
+    @Override
+    public long lastModified(String path) {
+        return new File(path).lastModified();
+    }
+
+    @Override
+    public FileProbe probeFiles(String[] directories, String[] names) {
+        return FileProbe.probe(directories, names);
+    }
+
+    @Override
+    public InputStream openMounts() throws IOException {
+        IOException error = null;
+        for (String file : MOUNTS_FILES) {
+            try {
+                return new FileInputStream(file);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        throw error;
+    }
+
+    @Override
+    public SystemPropertyReader getSystemProperties() {
+        return systemProperties;
+    }
+
+    @Override
+    public String runCommand(String... command) throws IOException {
+        return processRunner.run(command);
+    }
+
+    @Override
+    public String runInShell(String commandLine) throws IOException {
+        return shell.run(commandLine);
+    }
+}
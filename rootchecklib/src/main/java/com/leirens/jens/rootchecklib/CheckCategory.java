@@ -0,0 +1,38 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * The kind of sign a finding points to, see {@link RootCheckResult#getCategoryMask()}
+ */
+public enum CheckCategory {
+
+    ROOT_APPS,
+    DANGEROUS_APPS,
+    ROOT_CLOAKING_APPS,
+    SU_PATH,
+    ROOT_ACCESS,
+    BINARIES,
+    RW_PATHS,
+    DANGEROUS_PROPS,
+    BUILD_KEYS,
+    USB_DEBUGGING,
+    EMULATOR,
+    NATIVE_BINARIES,
+    CUSTOM,
+
+    /**
+     * A check threw instead of returning a result, the sign it looks for is unknown
+     */
+    FAILED_CHECKS,
+
+    /**
+     * An external process did not finish in time, the check that ran it may be incomplete
+     */
+    TIMEOUTS;
+
+    /**
+     * @return - the bit of this category in a category mask
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,155 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Gives a {@link RootCheck} access to the device for the duration of one scan.
+ */
+public class CheckContext {
+
+    private final DeviceEnvironment environment;
+    private final Context context;
+    private SignatureDatabase signatures;
+    private FileProbe binaryProbe;
+    private FileSystemSnapshot fileSystemSnapshot;
+    private long suPathsFingerprint = FingerprintedCheck.NO_FINGERPRINT;
+    private long mountsFingerprint = FingerprintedCheck.NO_FINGERPRINT;
+
+    public CheckContext(Context context) {
+        this(new AndroidDeviceEnvironment(context));
+    }
+
+    /**
+     * @param environment - the device the checks read from, a fake environment lets the checks run on the JVM
+     */
+    public CheckContext(DeviceEnvironment environment) {
+        this(environment, null);
+    }
+
+    /**
+     * @param environment - the device the checks read from, a fake environment lets the checks run on the JVM
+     * @param signatures - the signatures the checks look for, null to load them when they are first needed
+     */
+    public CheckContext(DeviceEnvironment environment, SignatureDatabase signatures) {
+        this.environment = environment;
+        this.context = environment instanceof AndroidDeviceEnvironment
+                ? ((AndroidDeviceEnvironment) environment).getContext() : null;
+        this.signatures = signatures;
+    }
+
+    /**
+     * @return - the android context, null when the checks do not run against the real device
+     */
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * @return - the device the checks read from
+     */
+    public DeviceEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Loads the signature database the first time it is called, the built-in lists when the checks do not run
+     * against the real device
+     * @return - the signatures the checks look for
+     */
+    public synchronized SignatureDatabase getSignatures() {
+        if (signatures == null) {
+            signatures = context != null ? SignatureDatabase.get(context) : SignatureDatabase.getDefaults();
+        }
+        return signatures;
+    }
+
+    /**
+     * Probes all SU_PATHS for all ROOT_BINARIES from native code the first time it is called during a scan,
+     * with a single native call
+     * @return - the probe of the root binaries
+     */
+    public synchronized FileProbe getBinaryProbe() {
+        if (binaryProbe == null) {
+            binaryProbe = environment.probeFiles(toArray(SignatureSet.SU_PATHS), toArray(SignatureSet.ROOT_BINARIES));
+        }
+        return binaryProbe;
+    }
+
+    /**
+     * Snapshots all SU_PATHS and PATH directories the first time it is called during a scan,
+     * so the checks that look for binaries share a single listing of every directory
+     * @return - the snapshot with the ROOT_BINARIES as candidate names
+     */
+    public synchronized FileSystemSnapshot getFileSystemSnapshot() {
+        if (fileSystemSnapshot == null) {
+            List<String> directories = new ArrayList<>(getSignatures().get(SignatureSet.SU_PATHS));
+            String pathVariable = environment.getEnv("PATH");
+            if (pathVariable != null) {
+                directories.addAll(Arrays.asList(pathVariable.split(":")));
+            }
+            fileSystemSnapshot = FileSystemSnapshot.create(environment, directories,
+                    toArray(SignatureSet.ROOT_BINARIES));
+        }
+        return fileSystemSnapshot;
+    }
+
+    /**
+     * Fingerprints the modification times of all SU_PATHS directories the first time it is called during a scan.
+     * The time of a directory changes when a file is added or removed, like a su binary.
+     * @return - the fingerprint of the su directories and the signatures
+     */
+    public synchronized long getSuPathsFingerprint() {
+        if (suPathsFingerprint == FingerprintedCheck.NO_FINGERPRINT) {
+            long fingerprint = Fingerprints.add(Fingerprints.EMPTY, getSignatures().getFingerprint());
+            for (String path : getSignatures().get(SignatureSet.SU_PATHS)) {
+                fingerprint = Fingerprints.add(fingerprint, environment.lastModified(path));
+            }
+            suPathsFingerprint = fingerprint;
+        }
+        return suPathsFingerprint;
+    }
+
+    private String[] toArray(SignatureSet set) {
+        List<String> list = getSignatures().get(set);
+        return list.toArray(new String[list.size()]);
+    }
+
+    /**
+     * Hashes the contents of the mounts file the first time it is called during a scan
+     * @return - the fingerprint of the mounts or NO_FINGERPRINT if they can not be read
+     */
+    public synchronized long getMountsFingerprint() {
+        if (mountsFingerprint == FingerprintedCheck.NO_FINGERPRINT) {
+            try {
+                InputStream in = environment.openMounts();
+                try {
+                    long fingerprint = Fingerprints.EMPTY;
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        fingerprint = Fingerprints.add(fingerprint, buffer, 0, read);
+                    }
+                    mountsFingerprint = fingerprint;
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                RootCheckLog.e("CheckContext", "Could not fingerprint the mounts: " + e);
+            }
+        }
+        return mountsFingerprint;
+    }
+
+    /**
+     * @return - reads system properties without spawning a process
+     */
+    public SystemPropertyReader getSystemProperties() {
+        return environment.getSystemProperties();
+    }
+}
@@ -0,0 +1,27 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * Estimated cost of a {@link RootCheck}, ordered from cheapest to most expensive.
+ */
+public enum CheckCost {
+
+    /**
+     * Only reads fields that are already in memory, like the android.os.Build fields.
+     */
+    BUILD_FIELDS,
+
+    /**
+     * Stats or reads a few files.
+     */
+    FILE_SYSTEM,
+
+    /**
+     * Does binder calls to a system service, like the PackageManager or the settings provider.
+     */
+    SYSTEM_SERVICE,
+
+    /**
+     * Spawns an external process.
+     */
+    PROCESS
+}
@@ -0,0 +1,75 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the outcomes of every check. Recording a call is one lock-free increment,
+ * only the first call for a check allocates its counters.
+ */
+public class CheckCounters implements CheckListener {
+
+    private static final int OUTCOMES = CheckOutcome.values().length;
+
+    private final ConcurrentMap<String, AtomicLongArray> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void onCheckStarted(String checkId) {
+    }
+
+    @Override
+    public void onCheckFinished(String checkId, CheckOutcome outcome, long durationNanos, Throwable error) {
+        countersOf(checkId).incrementAndGet(outcome.ordinal());
+    }
+
+    private AtomicLongArray countersOf(String checkId) {
+        AtomicLongArray checkCounters = counters.get(checkId);
+        if (checkCounters == null) {
+            AtomicLongArray created = new AtomicLongArray(OUTCOMES);
+            checkCounters = counters.putIfAbsent(checkId, created);
+            if (checkCounters == null) {
+                checkCounters = created;
+            }
+        }
+        return checkCounters;
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @param outcome - the outcome to count
+     * @return - how many times the check ended with the outcome
+     */
+    public long getCount(String checkId, CheckOutcome outcome) {
+        AtomicLongArray checkCounters = counters.get(checkId);
+        return checkCounters != null ? checkCounters.get(outcome.ordinal()) : 0;
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @return - how many times the check finished, with any outcome
+     */
+    public long getTotal(String checkId) {
+        AtomicLongArray checkCounters = counters.get(checkId);
+        long total = 0;
+        if (checkCounters != null) {
+            for (int i = 0; i < OUTCOMES; i++) {
+                total += checkCounters.get(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return - the ids of the checks that were counted
+     */
+    public Set<String> getCheckIds() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+}
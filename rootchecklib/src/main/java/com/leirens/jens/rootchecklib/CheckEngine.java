@@ -0,0 +1,399 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Runs independent root checks concurrently on a bounded executor and gathers their results.
+ * The wall-clock time of a scan is roughly the time of the slowest check instead of the sum of all of them.
+ */
+public class CheckEngine {
+
+    private static final String TAG = "CheckEngine";
+
+    // Most checks block on I/O (process spawns, binder calls, stat), so the pool may be larger than the cpu count
+    private static final int MIN_POOL_SIZE = 4;
+    private static final int MAX_POOL_SIZE = 8;
+
+    private static ExecutorService defaultExecutor;
+
+    private final ExecutorService executor;
+    private final List<CheckListener> checkListeners = new CopyOnWriteArrayList<>();
+
+    public CheckEngine(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor == null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * The shared executor that is used when no executor is injected.
+     * It is bounded and uses daemon threads so it never keeps the process alive.
+     * @return - the shared check executor
+     */
+    public static synchronized ExecutorService getDefaultExecutor() {
+        if (defaultExecutor == null) {
+            int threads = Math.max(MIN_POOL_SIZE, Math.min(MAX_POOL_SIZE, Runtime.getRuntime().availableProcessors() * 2));
+            defaultExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * @param listener - receives the timing and the outcome of every check of the next scans
+     */
+    public void addCheckListener(CheckListener listener) {
+        checkListeners.add(listener);
+    }
+
+    public void removeCheckListener(CheckListener listener) {
+        checkListeners.remove(listener);
+    }
+
+    /**
+     * Runs the checks and waits for them to finish.
+     * The findings are reported in the order of the checks,
+     * so the report is the same as when the checks would run one after another.
+     * @param checks - the checks to run
+     * @param mode - whether all checks run or the scan stops at the first check that detects root
+     * @param context - the context that is shared by the checks of this scan
+     * @param cache - the cache that serves fresh results without running the check, may be null
+     * @param fingerprints - the previous results of the fingerprinted checks for an incremental scan, may be null
+     * @return - the verdict and the findings of the checks that ran, an empty result if the thread was interrupted
+     */
+    RootCheckResult runAll(List<RootCheck> checks, ScanMode mode, CheckContext context, CheckResultCache cache,
+                           FingerprintStore fingerprints) {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final RootCheckResult[] result = new RootCheckResult[1];
+
+        Scan scan = start(checks, mode, context, cache, fingerprints, new Listener() {
+            @Override
+            public void onScanComplete(RootCheckResult scanResult) {
+                result[0] = scanResult;
+                latch.countDown();
+            }
+        });
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            scan.cancel();
+            Thread.currentThread().interrupt();
+            return RootCheckResult.EMPTY;
+        }
+        return result[0];
+    }
+
+    /**
+     * Starts the checks without blocking the calling thread.
+     * The listener is called on the thread that finished the last check, unless the scan was cancelled.
+     * When every result comes from the cache no check is submitted and the listener is called right away.
+     * @param checks - the checks to run
+     * @param mode - whether all checks run or the scan stops at the first check that detects root
+     * @param context - the context that is shared by the checks of this scan
+     * @param cache - the cache that serves fresh results without running the check, may be null
+     * @param fingerprints - the previous results of the fingerprinted checks for an incremental scan, may be null
+     * @param listener - receives the verdict and the findings in the order of the checks
+     * @return - the running scan, which can be cancelled
+     */
+    Scan start(List<RootCheck> checks, ScanMode mode, CheckContext context, CheckResultCache cache,
+               FingerprintStore fingerprints, Listener listener) {
+        Scan scan = new Scan(executor, checks, mode, context, cache, fingerprints, checkListeners, listener);
+        scan.startNextStage();
+        return scan;
+    }
+
+    /**
+     * Groups the checks in stages. A full report runs everything in one stage,
+     * a fail-fast scan runs one stage per cost, cheapest first.
+     */
+    private static List<List<Integer>> createStages(List<RootCheck> checks, ScanMode mode) {
+        List<List<Integer>> stages = new ArrayList<>();
+        if (mode == ScanMode.FULL_REPORT) {
+            List<Integer> stage = new ArrayList<>(checks.size());
+            for (int i = 0; i < checks.size(); i++) {
+                stage.add(i);
+            }
+            stages.add(stage);
+            return stages;
+        }
+
+        for (CheckCost cost : CheckCost.values()) {
+            List<Integer> stage = new ArrayList<>();
+            for (int i = 0; i < checks.size(); i++) {
+                if (checks.get(i).getCost() == cost) {
+                    stage.add(i);
+                }
+            }
+            if (!stage.isEmpty()) {
+                stages.add(stage);
+            }
+        }
+        return stages;
+    }
+
+    interface Listener {
+        void onScanComplete(RootCheckResult result);
+    }
+
+    /**
+     * The state of one scan. Every check writes its result in its own slot,
+     * so concurrent checks never write to the same collection.
+     * The checks of a stage run concurrently, the next stage starts when the last check of a stage finishes.
+     * In fail-fast mode the first check that detects root completes the scan and cancels the other checks.
+     */
+    static final class Scan {
+
+        private final ExecutorService executor;
+        private final List<RootCheck> checks;
+        private final boolean failFast;
+        private final CheckContext context;
+        private final CheckResultCache cache;
+        private final FingerprintStore fingerprints;
+        private final List<CheckListener> checkListeners;
+        private final Listener listener;
+        private final List<List<Integer>> stages;
+        private final AtomicReferenceArray<CheckResult> results;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final Future<?>[] futures;
+        private int nextStage;
+        private volatile boolean cancelled;
+
+        private Scan(ExecutorService executor, List<RootCheck> checks, ScanMode mode, CheckContext context,
+                     CheckResultCache cache, FingerprintStore fingerprints, List<CheckListener> checkListeners,
+                     Listener listener) {
+            this.executor = executor;
+            this.checks = checks;
+            this.failFast = mode == ScanMode.FAIL_FAST;
+            this.context = context;
+            this.cache = cache;
+            this.fingerprints = fingerprints;
+            // a listener that is added during the scan only sees the next scan, so every check has a matching start
+            this.checkListeners = new ArrayList<>(checkListeners);
+            this.listener = listener;
+            this.stages = createStages(checks, mode);
+            this.results = new AtomicReferenceArray<>(checks.size());
+            this.futures = new Future<?>[checks.size()];
+        }
+
+        /**
+         * Submits the checks of the next stage that are not cached or completes the scan when all stages ran
+         */
+        private synchronized void startNextStage() {
+            while (!cancelled && !finished.get()) {
+                if (nextStage == stages.size()) {
+                    complete(-1);
+                    return;
+                }
+                List<Integer> stage = stages.get(nextStage++);
+                List<Integer> uncached = new ArrayList<>(stage.size());
+                for (int index : stage) {
+                    CheckResult cached = cache != null ? cache.get(checks.get(index)) : null;
+                    if (cached == null) {
+                        uncached.add(index);
+                        continue;
+                    }
+                    results.set(index, cached);
+                    notifyCached(checks.get(index));
+                    if (failFast && cached.isDetected()) {
+                        complete(-1);
+                        return;
+                    }
+                }
+                if (uncached.isEmpty()) {
+                    continue;
+                }
+
+                remaining.set(uncached.size());
+                for (final int index : uncached) {
+                    futures[index] = executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            runCheck(index);
+                        }
+                    });
+                }
+                return;
+            }
+        }
+
+        private void runCheck(int index) {
+            if (cancelled || finished.get()) {
+                return;
+            }
+            RootCheck check = checks.get(index);
+            CheckResult result = null;
+            try {
+                long fingerprint = fingerprintOf(check);
+                CheckResult unchanged = fingerprint != FingerprintedCheck.NO_FINGERPRINT
+                        ? fingerprints.get(check.getId(), fingerprint) : null;
+                if (unchanged != null) {
+                    // the inputs did not change since the check last ran
+                    results.set(index, unchanged);
+                    notifyCached(check);
+                    result = unchanged;
+                } else {
+                    long cacheGeneration = cache != null ? cache.getGeneration() : 0;
+                    long startNanos = notifyStarted(check);
+                    try {
+                        CheckResult checkResult = check.run(context);
+                        if (cancelled || finished.get()) {
+                            // the check may have been interrupted, its result is incomplete
+                            notifyFinished(check, CheckOutcome.CANCELLED, startNanos, null);
+                            return;
+                        }
+                        results.set(index, checkResult);
+                        // a check that timed out is incomplete, it runs again the next time
+                        if (!checkResult.isTimedOut()) {
+                            if (cache != null) {
+                                cache.put(check, checkResult, cacheGeneration);
+                            }
+                            if (fingerprint != FingerprintedCheck.NO_FINGERPRINT) {
+                                fingerprints.put(check.getId(), fingerprint, checkResult);
+                            }
+                        }
+                        result = checkResult;
+                        notifyFinished(check, outcomeOf(checkResult), startNanos, null);
+                    } catch (Throwable e) {
+                        // an Error like an UnsatisfiedLinkError of the native probe fails the check, not the scan
+                        RootCheckLog.e(TAG, check.getId() + " failed: " + e);
+                        if (!cancelled && !finished.get()) {
+                            // the check could not look, which is not the same as finding nothing
+                            results.set(index, CheckResult.failed(check.getId(), e));
+                        }
+                        notifyFinished(check, CheckOutcome.FAILED, startNanos, e);
+                    }
+                }
+            } finally {
+                // whatever the check did, the stage has to finish or the scan never completes
+                if (failFast && result != null && result.isDetected()) {
+                    complete(index);
+                } else if (remaining.decrementAndGet() == 0) {
+                    startNextStage();
+                }
+            }
+        }
+
+        /**
+         * @return - the fingerprint of the inputs of the check, or NO_FINGERPRINT if the scan is not incremental
+         */
+        private long fingerprintOf(RootCheck check) {
+            if (fingerprints == null || !(check instanceof FingerprintedCheck)) {
+                return FingerprintedCheck.NO_FINGERPRINT;
+            }
+            try {
+                return ((FingerprintedCheck) check).fingerprint(context);
+            } catch (RuntimeException e) {
+                RootCheckLog.e(TAG, check.getId() + " fingerprint failed: " + e);
+                return FingerprintedCheck.NO_FINGERPRINT;
+            }
+        }
+
+        /**
+         * @return - the start time of the check, 0 when nobody listens so the clock is not read
+         */
+        private long notifyStarted(RootCheck check) {
+            if (checkListeners.isEmpty()) {
+                return 0;
+            }
+            for (CheckListener checkListener : checkListeners) {
+                try {
+                    checkListener.onCheckStarted(check.getId());
+                } catch (RuntimeException e) {
+                    RootCheckLog.e(TAG, "Check listener failed", e);
+                }
+            }
+            return System.nanoTime();
+        }
+
+        private void notifyFinished(RootCheck check, CheckOutcome outcome, long startNanos, Throwable error) {
+            if (checkListeners.isEmpty()) {
+                return;
+            }
+            long durationNanos = outcome == CheckOutcome.CACHED ? 0 : System.nanoTime() - startNanos;
+            for (CheckListener checkListener : checkListeners) {
+                try {
+                    checkListener.onCheckFinished(check.getId(), outcome, durationNanos, error);
+                } catch (RuntimeException e) {
+                    RootCheckLog.e(TAG, "Check listener failed", e);
+                }
+            }
+        }
+
+        private CheckOutcome outcomeOf(CheckResult result) {
+            if (result.isTimedOut()) {
+                return CheckOutcome.TIMED_OUT;
+            }
+            return result.isDetected() ? CheckOutcome.DETECTED : CheckOutcome.NOT_DETECTED;
+        }
+
+        private void notifyCached(RootCheck check) {
+            notifyStarted(check);
+            notifyFinished(check, CheckOutcome.CACHED, 0, null);
+        }
+
+        /**
+         * @param finishedIndex - the check that completes the scan, its own thread must not be interrupted
+         */
+        private void complete(int finishedIndex) {
+            if (cancelled || !finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (failFast) {
+                // stop the checks that are still running in this stage
+                cancelFutures(finishedIndex);
+            }
+
+            boolean rooted = false;
+            List<Finding> findings = new ArrayList<>();
+            for (int i = 0; i < results.length(); i++) {
+                CheckResult result = results.get(i);
+                if (result != null) {
+                    rooted |= result.isDetected();
+                    findings.addAll(result.getFindings());
+                }
+            }
+            listener.onScanComplete(new RootCheckResult(rooted, findings));
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Stops the scan, running checks are interrupted and the listener will not be called.
+         */
+        void cancel() {
+            cancelled = true;
+            cancelFutures(-1);
+        }
+
+        private synchronized void cancelFutures(int skipIndex) {
+            for (int i = 0; i < futures.length; i++) {
+                if (futures[i] != null && i != skipIndex) {
+                    futures[i].cancel(true);
+                }
+            }
+        }
+    }
+}
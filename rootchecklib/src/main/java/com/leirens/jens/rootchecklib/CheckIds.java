@@ -0,0 +1,25 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * The ids of the built-in checks, these can be used to select or skip checks in a {@link RootCheckRegistry}.
+ */
+public final class CheckIds {
+
+    public static final String ROOT_MANAGEMENT_APPS = "rootManagementApps";
+    public static final String DANGEROUS_APPS = "dangerousApps";
+    public static final String ROOT_CLOAKING_APPS = "rootCloakingApps";
+    public static final String SU_PATH = "suPath";
+    public static final String SU_BINARY = "suBinary";
+    public static final String MAGISK_BINARY = "magiskBinary";
+    public static final String BUSYBOX_BINARY = "busyboxBinary";
+    public static final String RW_PATHS = "rwPaths";
+    public static final String DANGEROUS_PROPS = "dangerousProps";
+    public static final String TEST_KEYS = "testKeys";
+    public static final String DEV_KEYS = "devKeys";
+    public static final String USB_DEBUGGING = "usbDebugging";
+    public static final String EMULATOR = "emulator";
+    public static final String NATIVE_SU_BINARY = "nativeSuBinary";
+
+    private CheckIds() {
+    }
+}
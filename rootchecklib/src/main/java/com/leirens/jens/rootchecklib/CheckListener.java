@@ -0,0 +1,24 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * Receives the timing and the outcome of every check, see {@link RootChecker#addCheckListener(CheckListener)}.
+ * Both methods are called on the thread that runs the check, so they must be fast and thread safe.
+ * {@link CheckCounters} and {@link LatencyHistogram} aggregate the calls, {@link TraceCheckListener} shows the checks
+ * in systrace.
+ */
+public interface CheckListener {
+
+    /**
+     * @param checkId - the id of the check that starts
+     */
+    void onCheckStarted(String checkId);
+
+    /**
+     * Called once for every started check, on the same thread as {@link #onCheckStarted(String)}
+     * @param checkId - the id of the check that finished
+     * @param outcome - how the check ended
+     * @param durationNanos - the time the check took, 0 for a cached result
+     * @param error - the exception of a failed check, otherwise null
+     */
+    void onCheckFinished(String checkId, CheckOutcome outcome, long durationNanos, Throwable error);
+}
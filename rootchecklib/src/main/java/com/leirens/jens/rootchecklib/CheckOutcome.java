@@ -0,0 +1,38 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * How a single {@link RootCheck} of a scan ended, see {@link CheckListener}.
+ */
+public enum CheckOutcome {
+
+    /**
+     * The check ran and detected root.
+     */
+    DETECTED,
+
+    /**
+     * The check ran and did not detect root.
+     */
+    NOT_DETECTED,
+
+    /**
+     * An external process of the check was destroyed at its deadline, see {@link CheckResult#isTimedOut()}.
+     * The check may still have detected root before that.
+     */
+    TIMED_OUT,
+
+    /**
+     * The result came from the {@link CheckResultCache}, the check did not run.
+     */
+    CACHED,
+
+    /**
+     * The check threw an exception.
+     */
+    FAILED,
+
+    /**
+     * The scan was cancelled or already completed while the check ran, its result was dropped.
+     */
+    CANCELLED
+}
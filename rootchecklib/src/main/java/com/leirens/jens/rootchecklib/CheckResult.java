@@ -0,0 +1,83 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a single {@link RootCheck}.
+ */
+public class CheckResult {
+
+    private static final CheckResult NOT_DETECTED = new CheckResult(false, Collections.<Finding>emptyList());
+
+    private final boolean detected;
+    private final List<Finding> findings;
+
+    /**
+     * @param detected - true if the check found a sign of root
+     * @param findings - what the check found, a check may report findings without detecting root
+     */
+    public CheckResult(boolean detected, List<Finding> findings) {
+        this.detected = detected;
+        this.findings = Collections.unmodifiableList(findings);
+    }
+
+    public static CheckResult notDetected() {
+        return NOT_DETECTED;
+    }
+
+    /**
+     * @param finding - the only finding of the check
+     * @return - a result that detected root
+     */
+    public static CheckResult detected(Finding finding) {
+        return new CheckResult(true, Collections.singletonList(finding));
+    }
+
+    /**
+     * @param checkId - the id of the check that threw
+     * @param error - what it threw
+     * @return - a result that did not detect root, but tells that the check could not look
+     */
+    public static CheckResult failed(String checkId, Throwable error) {
+        return new CheckResult(false, Collections.singletonList(
+                new Finding(FindingCode.CHECK_FAILED, checkId, error.toString())));
+    }
+
+    public boolean isDetected() {
+        return detected;
+    }
+
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * @return - true if an external process of the check was destroyed at its deadline, the result may be incomplete
+     */
+    public boolean isTimedOut() {
+        for (int i = 0; i < findings.size(); i++) {
+            if (findings.get(i).getCode() == FindingCode.TIMED_OUT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return - true if the check threw, see {@link #failed(String, Throwable)}
+     */
+    public boolean isFailed() {
+        for (int i = 0; i < findings.size(); i++) {
+            if (findings.get(i).getCode() == FindingCode.CHECK_FAILED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "CheckResult{detected=" + detected + ", findings=" + findings + "}";
+    }
+}
@@ -0,0 +1,159 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the result of every check for a limited time, so repeated scans are served from memory.
+ * Every check has its own time to live, checks that only read the Build fields are cached for the lifetime of the process.
+ * The results of the package checks are dropped as soon as a package is installed or removed.
+ * The cache lives in memory only, a reboot always starts with an empty cache.
+ */
+public class CheckResultCache {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final long FOREVER = Long.MAX_VALUE;
+
+    private static CheckResultCache instance;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> ttls = new ConcurrentHashMap<>();
+    private final Set<String> packageDependentIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicLong generation = new AtomicLong();
+    private volatile long defaultTtlMillis = DEFAULT_TTL_MILLIS;
+
+    public CheckResultCache() {
+        packageDependentIds.addAll(Arrays.asList(CheckIds.ROOT_MANAGEMENT_APPS, CheckIds.DANGEROUS_APPS, CheckIds.ROOT_CLOAKING_APPS));
+    }
+
+    /**
+     * @param context - any context, the application context is used to listen for package changes
+     * @return - the cache that is shared by the whole process
+     */
+    public static synchronized CheckResultCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new CheckResultCache();
+            instance.listenForPackageChanges(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Drops the results of the package dependent checks when a package is installed or removed
+     * @param context - any context, the application context is used to register the receiver
+     */
+    public void listenForPackageChanges(Context context) {
+        // the index has to be updated before the package checks can run again
+        InstalledPackageIndex.get(context);
+        PackageChangeMonitor.get(context).addListener(new PackageChangeMonitor.Listener() {
+            @Override
+            public void onPackageChanged(String packageName, boolean installed) {
+                invalidate(packageDependentIds);
+            }
+        });
+    }
+
+    /**
+     * @param checkId - the check
+     * @param ttlMillis - how long the result of the check is kept, 0 to never cache it
+     * @return - this cache
+     */
+    public CheckResultCache setTtl(String checkId, long ttlMillis) {
+        ttls.put(checkId, ttlMillis);
+        return this;
+    }
+
+    /**
+     * @param ttlMillis - how long results are kept for checks without their own ttl
+     * @return - this cache
+     */
+    public CheckResultCache setDefaultTtl(long ttlMillis) {
+        defaultTtlMillis = ttlMillis;
+        return this;
+    }
+
+    /**
+     * Marks checks whose results depend on the installed packages, the built-in package checks are marked by default
+     * @param checkIds - the checks that are invalidated when a package changes
+     * @return - this cache
+     */
+    public CheckResultCache invalidateOnPackageChange(String... checkIds) {
+        packageDependentIds.addAll(Arrays.asList(checkIds));
+        return this;
+    }
+
+    public void invalidate(String checkId) {
+        invalidate(Collections.singleton(checkId));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private void invalidate(Set<String> checkIds) {
+        generation.incrementAndGet();
+        entries.keySet().removeAll(new HashSet<>(checkIds));
+    }
+
+    /**
+     * @param check - the check
+     * @return - the cached result or null if there is no fresh result
+     */
+    CheckResult get(RootCheck check) {
+        Entry entry = entries.get(check.getId());
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAtNanos != FOREVER && System.nanoTime() - entry.expiresAtNanos > 0) {
+            entries.remove(check.getId());
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * Taken before a check runs, so a result that was computed while the cache got invalidated is not stored
+     * @return - the current generation of the cache
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    void put(RootCheck check, CheckResult result, long startGeneration) {
+        long ttlMillis = getTtl(check);
+        if (ttlMillis <= 0 || generation.get() != startGeneration) {
+            return;
+        }
+        long expiresAtNanos = ttlMillis == FOREVER ? FOREVER : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        entries.put(check.getId(), new Entry(result, expiresAtNanos));
+    }
+
+    private long getTtl(RootCheck check) {
+        Long ttl = ttls.get(check.getId());
+        if (ttl != null) {
+            return ttl;
+        }
+        // the Build fields never change while the process is running
+        return check.getCost() == CheckCost.BUILD_FIELDS ? FOREVER : defaultTtlMillis;
+    }
+
+    private static final class Entry {
+
+        final CheckResult result;
+        final long expiresAtNanos;
+
+        Entry(CheckResult result, long expiresAtNanos) {
+            this.result = result;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.FileSystemSnapshot;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.SignatureSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks various (SignatureSet.SU_PATHS) common locations for a binary, like su, magisk or busybox.
+ * The directories are looked up in the file system snapshot that is shared by all binary checks of a scan.
+ */
+public class BinaryCheck implements FingerprintedCheck {
+
+    private final String id;
+    private final String filename;
+
+    /**
+     * @param id - the id of the check
+     * @param filename - the name of the binary that needs to be checked
+     */
+    public BinaryCheck(String id, String filename) {
+        this.id = id;
+        this.filename = filename;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.FILE_SYSTEM;
+    }
+
+    /**
+     * @return - the modification times of the su directories, which change when a binary is added or removed
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        return context.getSuPathsFingerprint();
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+
+        List<Finding> findings = new ArrayList<>();
+        boolean result = false;
+
+        FileSystemSnapshot snapshot = context.getFileSystemSnapshot();
+        for (String completePath : snapshot.findPaths(filename, context.getSignatures().get(SignatureSet.SU_PATHS))) {
+            findings.add(new Finding(FindingCode.BINARY, completePath));
+            result = true;
+        }
+        if (RootCheckLog.isLoggable(Log.INFO)) {
+            RootCheckLog.i("checkForBinary",filename + " = " + String.valueOf(result));
+        }
+        return new CheckResult(result, findings);
+    }
+}
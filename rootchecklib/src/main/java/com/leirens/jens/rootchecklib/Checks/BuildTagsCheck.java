@@ -0,0 +1,67 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+/**
+ * Checks if the build is signed with the given keys, like test-keys or dev-keys
+ */
+public class BuildTagsCheck implements FingerprintedCheck {
+
+    private final String id;
+    private final String tag;
+    private final FindingCode code;
+
+    /**
+     * @param id - the id of the check
+     * @param tag - the tag to look for in the build tags
+     * @param code - the finding that is reported when the tag is found
+     */
+    public BuildTagsCheck(String id, String tag, FindingCode code) {
+        this.id = id;
+        this.tag = tag;
+        this.code = code;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.BUILD_FIELDS;
+    }
+
+    /**
+     * The Build fields never change while the process runs
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        return 0;
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+        String buildTags = context.getEnvironment().getBuildTags();
+        if ( buildTags != null && buildTags.contains(tag)){
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i(id, tag + " found = True");
+            }
+            return CheckResult.detected(new Finding(code));
+        } else {
+
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i(id, tag + " found =False");
+            }
+            return CheckResult.notDetected();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.Fingerprints;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.Severity;
+import com.leirens.jens.rootchecklib.SignatureSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks for several system properties that should not be set on a production device,
+ * the {@link SignatureSet#DANGEROUS_PROPS} of the signature database
+ */
+public class DangerousPropsCheck implements FingerprintedCheck {
+
+    @Override
+    public String getId() {
+        return CheckIds.DANGEROUS_PROPS;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.FILE_SYSTEM;
+    }
+
+    /**
+     * The ro. properties are read-only until the next reboot, so besides the signatures only the values of the
+     * other properties, like service.adb.root after adb root, can change
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        return context.getSignatures().getPropertyRules().addMutableValues(
+                Fingerprints.add(Fingerprints.EMPTY, context.getSignatures().getFingerprint()),
+                context.getSystemProperties());
+    }
+
+    /**
+     * Only rules with {@link Severity#HIGH} detect root, the other matches are reported as findings
+     */
+    @Override
+    public CheckResult run(CheckContext context) {
+        List<Finding> findings = new ArrayList<>();
+        Severity highest = context.getSignatures().getPropertyRules()
+                .evaluate(context.getSystemProperties(), findings);
+
+        if (RootCheckLog.isLoggable(Log.INFO)) {
+            for (Finding finding : findings) {
+                RootCheckLog.i("checkForDangerousProps", finding.getDetail() + " = [" + finding.getValue()
+                        + "] detected, " + finding.getSeverity());
+            }
+        }
+        return new CheckResult(highest == Severity.HIGH, findings);
+    }
+}
@@ -0,0 +1,106 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.DeviceEnvironment;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Check if the device is an emulator
+ */
+public class EmulatorCheck implements FingerprintedCheck {
+
+    @Override
+    public String getId() {
+        return CheckIds.EMULATOR;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.BUILD_FIELDS;
+    }
+
+    /**
+     * The Build fields never change while the process runs
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        return 0;
+    }
+
+    @Override
+    public CheckResult run(CheckContext context){
+        DeviceEnvironment environment = context.getEnvironment();
+        String board = environment.getBoard();
+        String device = environment.getDevice();
+        String hardware = environment.getHardware();
+        String model = environment.getModel();
+        String product = environment.getProduct();
+        List<Finding> findings = new ArrayList<>();
+        boolean emulated = false ;
+
+        // The name of the underlying board for emulators its "unknown".
+        if(board.contains("unknown")) {
+            emulated = true ;
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForEmulator Board" , board + " = true");
+            }
+            findings.add(new Finding(FindingCode.EMULATOR_BOARD));
+        }
+
+        // sometimes there is no bootloader so there is a false positive
+        /*// The bootloader, for emulators its "unknown".
+        if(Build.BOOTLOADER.contains("unknown")) {
+            emulated = true ;
+            reasons.add("Emulator detected: no bootloader");
+        }*/
+
+        // The name of device, for emulators its generic_x86
+        if(device.contains("generic")) {
+            emulated = true ;
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForEmulator Board" , device + " = true");
+            }
+            findings.add(new Finding(FindingCode.EMULATOR_DEVICE));
+        }
+
+        // The name of the hardware  "goldfish" or newer like "ranchu"
+        if(hardware.contains("goldfish") || hardware.contains("ranchu")) {
+            emulated = true ;
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForEmulator Board" , hardware + " = true");
+            }
+            findings.add(new Finding(FindingCode.EMULATOR_HARDWARE));
+        }
+
+        // The end-user-visible name for the end product. "SDK"
+        if(model.toUpperCase().contains("SDK") || model.toUpperCase().contains("GENERIC") ) {
+            emulated = true ;
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForEmulator Board" , model + " = true");
+            }
+            findings.add(new Finding(FindingCode.EMULATOR_MODEL));
+        }
+
+        // The name of the overall product. for emulators it contains sdk_gphone_x86
+        if(product.contains("sdk")){
+            emulated = true ;
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForEmulator Board" , product + " = true");
+            }
+            findings.add(new Finding(FindingCode.EMULATOR_PRODUCT));
+        }
+
+        return new CheckResult(emulated, findings);
+    }
+}
@@ -0,0 +1,53 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.FileProbe;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks the su paths from native code, which is harder to hook than the java file api
+ */
+public class NativeBinaryCheck implements FingerprintedCheck {
+
+    @Override
+    public String getId() {
+        return CheckIds.NATIVE_SU_BINARY;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.FILE_SYSTEM;
+    }
+
+    /**
+     * @return - the modification times of the su directories, which change when a binary is added or removed
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        return context.getSuPathsFingerprint();
+    }
+
+    @Override
+    public CheckResult run(CheckContext context){
+        FileProbe probe = context.getBinaryProbe();
+        if (!probe.isFromNative()) {
+            RootCheckLog.e("NativeBinaryCheck", "Native probe not available");
+            return CheckResult.notDetected();
+        }
+
+        List<Finding> findings = new ArrayList<>();
+        for (String path : probe.findPaths("su")) {
+            findings.add(new Finding(FindingCode.NATIVE_BINARY, path));
+        }
+        return new CheckResult(!findings.isEmpty(), findings);
+    }
+}
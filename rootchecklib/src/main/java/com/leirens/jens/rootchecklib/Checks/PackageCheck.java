@@ -0,0 +1,159 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.DeviceEnvironment;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.InstalledPackageIndex;
+import com.leirens.jens.rootchecklib.Fingerprints;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.SignatureSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Check for a list of well known root apps, like {@link SignatureSet#ROOT_MANAGEMENT_APPS}.
+ * On the device all package checks share one {@link InstalledPackageIndex}, so the installed packages are only enumerated once.
+ */
+public class PackageCheck implements FingerprintedCheck {
+
+    private final String id;
+    // the fixed packages and their positions, or null to take them from the signature database
+    private final List<String> packages;
+    private final Map<String, Integer> packageIndex;
+    private final SignatureSet signatureSet;
+    private final FindingCode code;
+    private final String logTag;
+
+    /**
+     * @param id - the id of the check
+     * @param packages - the packages to search for
+     * @param code - the finding that is reported for every installed package
+     * @param logTag - the tag the result is logged with
+     */
+    public PackageCheck(String id, String[] packages, FindingCode code, String logTag) {
+        this.id = id;
+        this.packages = Arrays.asList(packages.clone());
+        this.packageIndex = new HashMap<>(packages.length * 2);
+        for (int i = 0; i < packages.length; i++) {
+            if (!packageIndex.containsKey(packages[i])) {
+                packageIndex.put(packages[i], i);
+            }
+        }
+        this.signatureSet = null;
+        this.code = code;
+        this.logTag = logTag;
+    }
+
+    /**
+     * @param id - the id of the check
+     * @param signatureSet - the list of the signature database with the packages to search for
+     * @param code - the finding that is reported for every installed package
+     * @param logTag - the tag the result is logged with
+     */
+    public PackageCheck(String id, SignatureSet signatureSet, FindingCode code, String logTag) {
+        this.id = id;
+        this.packages = null;
+        this.packageIndex = null;
+        this.signatureSet = signatureSet;
+        this.code = code;
+        this.logTag = logTag;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.SYSTEM_SERVICE;
+    }
+
+    /**
+     * @return - the generation of the installed packages, which changes when a package is installed or removed,
+     * and the version of the signatures
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        long generation = context.getEnvironment().getPackagesGeneration();
+        if (generation < 0) {
+            return NO_FINGERPRINT;
+        }
+        return signatureSet != null
+                ? Fingerprints.add(Fingerprints.add(Fingerprints.EMPTY, generation), context.getSignatures().getFingerprint())
+                : generation;
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+        List<Finding> findings = new ArrayList<>();
+        if (isAnyPackageFromListInstalled(context, findings)) {
+            RootCheckLog.i(logTag, "True");
+            return new CheckResult(true, findings);
+        }
+        RootCheckLog.i(logTag, "False");
+        return CheckResult.notDetected();
+    }
+
+    /**
+     * Check if any package in the list is installed.
+     * When the installed packages are fewer than the signatures, the installed packages are looked up in the
+     * signatures instead, so a large signature database does not make the check slower.
+     * @return true if any of the packages are installed
+     */
+    private boolean isAnyPackageFromListInstalled(CheckContext context, List<Finding> findings){
+        DeviceEnvironment environment = context.getEnvironment();
+        List<String> packages = this.packages != null ? this.packages : context.getSignatures().get(signatureSet);
+        Collection<String> installed = environment.getInstalledPackages();
+        List<String> detected = new ArrayList<>();
+        if (installed != null && installed.size() < packages.size()) {
+            // report in the order of the signatures, like the lookup per signature does
+            Map<Integer, String> matches = new TreeMap<>();
+            for (String packageName : installed) {
+                int index = indexOf(context, packageName);
+                if (index >= 0) {
+                    matches.put(index, packageName);
+                }
+            }
+            detected.addAll(matches.values());
+        } else {
+            for (String packageName : packages) {
+                if (environment.isPackageInstalled(packageName)) {
+                    detected.add(packageName);
+                }
+            }
+        }
+
+        for (String packageName : detected) {
+            // Root app detected
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("PackageChecker",packageName + " ROOT app detected!");
+            }
+            findings.add(new Finding(code, packageName));
+        }
+        return !detected.isEmpty();
+    }
+
+    /**
+     * @return - the position of the package in the list of this check, -1 if it is not in the list
+     */
+    private int indexOf(CheckContext context, String packageName) {
+        if (packageIndex != null) {
+            Integer index = packageIndex.get(packageName);
+            return index != null ? index : -1;
+        }
+        return context.getSignatures().indexOf(signatureSet, packageName);
+    }
+}
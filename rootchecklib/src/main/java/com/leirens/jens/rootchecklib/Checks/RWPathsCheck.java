@@ -0,0 +1,129 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import android.util.Log;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.Fingerprints;
+import com.leirens.jens.rootchecklib.MountsReader;
+import com.leirens.jens.rootchecklib.ProcessTimeoutException;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+import com.leirens.jens.rootchecklib.SignatureDatabase;
+import com.leirens.jens.rootchecklib.SignatureSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks the RW paths that you should not be able to write
+ */
+public class RWPathsCheck implements FingerprintedCheck {
+
+    // the checks run on a small pool, so every pool thread keeps its own buffers between scans
+    private static final ThreadLocal<MountsReader> READERS = new ThreadLocal<MountsReader>() {
+        @Override
+        protected MountsReader initialValue() {
+            return new MountsReader();
+        }
+    };
+
+    @Override
+    public String getId() {
+        return CheckIds.RW_PATHS;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.FILE_SYSTEM;
+    }
+
+    /**
+     * @return - a hash of the mounts file and the version of the signatures
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        long mounts = context.getMountsFingerprint();
+        if (mounts == NO_FINGERPRINT) {
+            return NO_FINGERPRINT;
+        }
+        return Fingerprints.add(mounts, context.getSignatures().getFingerprint());
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+        List<String> writablePaths;
+        List<Finding> findings = new ArrayList<>();
+        SignatureDatabase signatures = context.getSignatures();
+        try {
+            writablePaths = READERS.get().findWritableMounts(context.getEnvironment().openMounts(),
+                    signatures.asSet(SignatureSet.PROTECTED_MOUNTS));
+        } catch (IOException e) {
+            RootCheckLog.e("checkForRWPaths", "Could not read the mounts file, falling back to mount: " + e);
+            writablePaths = findWritableMountsWithCommand(context, signatures, findings);
+        }
+
+        for (String pathToCheck : writablePaths) {
+            if (RootCheckLog.isLoggable(Log.INFO)) {
+                RootCheckLog.i("checkForRWPaths",pathToCheck+" path is mounted with rw permissions!");
+            }
+            findings.add(new Finding(FindingCode.RW_PATH, pathToCheck));
+        }
+        return new CheckResult(!writablePaths.isEmpty(), findings);
+    }
+
+    /**
+     * Parses the output of the mount command, only used when /proc/self/mounts can not be read
+     * @return - the protected paths that are mounted read-write
+     */
+    private List<String> findWritableMountsWithCommand(CheckContext context, SignatureDatabase signatures,
+                                                       List<Finding> findings) {
+        List<String> result = new ArrayList<>();
+
+        String[] lines;
+        try {
+            lines = context.getEnvironment().runInShell("mount").split("\n");
+        } catch (ProcessTimeoutException e) {
+            RootCheckLog.w("checkForRWPaths", e.getMessage());
+            findings.add(new Finding(FindingCode.TIMED_OUT, e.getCommandLine()));
+            return result;
+        } catch (IOException e) {
+            RootCheckLog.e("checkForRWPaths", "Could not run mount", e);
+            return result;
+        }
+        for (String line : lines) {
+
+            // Split lines into parts
+            String[] args = line.split(" ");
+
+            if (args.length < 4){
+                // If we don't have enough options per line, skip this and log an error
+                RootCheckLog.e("checkForRWPaths","Error formatting mount line: "+line);
+                continue;
+            }
+
+            String mountPoint = args[1].toLowerCase(Locale.US);
+            String mountOptions = args[3];
+
+            if (signatures.contains(SignatureSet.PROTECTED_MOUNTS, mountPoint)) {
+
+                // Split options out and compare against "rw" to avoid false positives
+                for (String option : mountOptions.split(",")){
+
+                    if (option.equalsIgnoreCase("rw")){
+                        result.add(mountPoint);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+}
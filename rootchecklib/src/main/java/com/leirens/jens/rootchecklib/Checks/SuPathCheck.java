@@ -0,0 +1,97 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.DeviceEnvironment;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.FileSystemSnapshot;
+import com.leirens.jens.rootchecklib.FingerprintedCheck;
+import com.leirens.jens.rootchecklib.Fingerprints;
+import com.leirens.jens.rootchecklib.ProcessTimeoutException;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks if there is a path SU, if there is one it also checks if root access is given
+ */
+public class SuPathCheck implements FingerprintedCheck {
+
+    @Override
+    public String getId() {
+        return CheckIds.SU_PATH;
+    }
+
+    /**
+     * Most of the time only the PATH directories are checked, but when su is found it is executed
+     */
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.PROCESS;
+    }
+
+    /**
+     * The root access is only asked again when the PATH or one of its directories changed
+     * @return - the PATH and the modification times of its directories
+     */
+    @Override
+    public long fingerprint(CheckContext context) {
+        DeviceEnvironment environment = context.getEnvironment();
+        String pathVariable = environment.getEnv("PATH");
+        long fingerprint = Fingerprints.add(Fingerprints.EMPTY, pathVariable);
+        if (pathVariable != null) {
+            for (String pathDir : pathVariable.split(":")) {
+                fingerprint = Fingerprints.add(fingerprint, environment.lastModified(pathDir));
+            }
+        }
+        return fingerprint;
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+        boolean check = false ;
+        DeviceEnvironment environment = context.getEnvironment();
+        String pathVariable = environment.getEnv("PATH");
+        FileSystemSnapshot snapshot = context.getFileSystemSnapshot();
+        for(String pathDir : pathVariable != null ? pathVariable.split(":") : new String[0]){
+            if(snapshot.exists(pathDir, "su")) {
+                check =  true;
+            }
+        }
+        if(check){
+            List<Finding> findings = new ArrayList<>();
+            findings.add(new Finding(FindingCode.SU_IN_PATH));
+            RootCheckLog.i("checkforSUPath", "SU path found = True");
+            checkRootMethod2A(environment, findings);
+            return new CheckResult(true, findings);
+        }
+        RootCheckLog.i("checkforSUPath", "False");
+        return CheckResult.notDetected();
+    }
+
+    /**
+     * if there are SU paths check the UID, this might trigger authorization from a root management app
+     */
+    private void checkRootMethod2A(DeviceEnvironment environment, List<Finding> findings){
+        try {
+            String output = environment.runCommand("su", "-c", "id");
+            if (output.toLowerCase().contains("uid=0"))
+                findings.add(new Finding(FindingCode.ROOT_ACCESS_GRANTED));
+            RootCheckLog.i("Root access", "isRootGiven= True");
+
+
+        } catch (ProcessTimeoutException e) {
+            // su is waiting for the grant dialog of a root manager
+            RootCheckLog.w("Root access", e.getMessage());
+            findings.add(new Finding(FindingCode.TIMED_OUT, e.getCommandLine()));
+        } catch (IOException e) {
+            RootCheckLog.e("Root access", e.toString());
+
+        }
+    }
+}
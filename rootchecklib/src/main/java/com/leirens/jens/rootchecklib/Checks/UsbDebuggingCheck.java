@@ -0,0 +1,41 @@
+package com.leirens.jens.rootchecklib.Checks;
+
+import com.leirens.jens.rootchecklib.CheckContext;
+import com.leirens.jens.rootchecklib.CheckCost;
+import com.leirens.jens.rootchecklib.CheckIds;
+import com.leirens.jens.rootchecklib.CheckResult;
+import com.leirens.jens.rootchecklib.Finding;
+import com.leirens.jens.rootchecklib.FindingCode;
+import com.leirens.jens.rootchecklib.RootCheck;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.util.Collections;
+
+/**
+ * Checks if the usb debugging is enabled.
+ * This is only reported as a reason, usb debugging on its own does not mean the device is rooted.
+ */
+public class UsbDebuggingCheck implements RootCheck {
+
+    @Override
+    public String getId() {
+        return CheckIds.USB_DEBUGGING;
+    }
+
+    @Override
+    public CheckCost getCost() {
+        return CheckCost.SYSTEM_SERVICE;
+    }
+
+    @Override
+    public CheckResult run(CheckContext context) {
+        //Tested
+        if (context.getEnvironment().isUsbDebuggingEnabled()) {
+            RootCheckLog.i("USB debugging", "USB debugging = True");
+            return new CheckResult(false, Collections.singletonList(new Finding(FindingCode.USB_DEBUGGING_ENABLED)));
+        } else {
+            RootCheckLog.i("USB debugging", "USB debugging = False");
+            return CheckResult.notDetected();
+        }
+    }
+}
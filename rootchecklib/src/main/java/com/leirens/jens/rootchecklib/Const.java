@@ -38,6 +38,12 @@ public class Const {
             "com.formyhm.hideroot"
     };
 
+    public static final String[] rootBinaries = {
+            "su",
+            "magisk",
+            "busybox"
+    };
+
     public static final String[] suPaths ={
             "/data/local/",
             "/data/local/bin/",
@@ -66,6 +72,22 @@ public class Const {
             "/etc",
     };
 
+    // See PropertyRule for the format, a rule without severity is high
+    public static final String[] dangerousPropertyRules = {
+            "ro.debuggable=1",
+            "ro.secure=0",
+            "service.adb.root=1",
+            "medium ro.adb.secure=0",
+            "medium ro.build.type=eng",
+            "low ro.build.type=userdebug",
+            "medium ro.build.selinux=0",
+            "medium ro.boot.selinux=permissive",
+            "medium ro.boot.verifiedbootstate=orange",
+            "low ro.boot.verifiedbootstate=yellow",
+            "medium ro.boot.flash.locked=0",
+            "medium ro.boot.vbmeta.device_state=unlocked",
+    };
+
 
 
 }
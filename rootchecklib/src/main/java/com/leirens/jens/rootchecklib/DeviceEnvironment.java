@@ -0,0 +1,127 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Everything the checks read from the device.
+ * The checks never touch android.os.Build, Settings, the PackageManager or Runtime.exec directly,
+ * so they can also run on the JVM against a fake device, for example in the benchmarks.
+ * {@link AndroidDeviceEnvironment} reads the real device.
+ */
+public interface DeviceEnvironment {
+
+    /**
+     * @return - the tags of the build, like android.os.Build.TAGS, may be null
+     */
+    String getBuildTags();
+
+    /**
+     * @return - the name of the underlying board, like android.os.Build.BOARD
+     */
+    String getBoard();
+
+    /**
+     * @return - the name of the industrial design, like android.os.Build.DEVICE
+     */
+    String getDevice();
+
+    /**
+     * @return - the name of the hardware, like android.os.Build.HARDWARE
+     */
+    String getHardware();
+
+    /**
+     * @return - the end-user-visible name of the product, like android.os.Build.MODEL
+     */
+    String getModel();
+
+    /**
+     * @return - the name of the overall product, like android.os.Build.PRODUCT
+     */
+    String getProduct();
+
+    /**
+     * @return - true if usb debugging is enabled in the settings
+     */
+    boolean isUsbDebuggingEnabled();
+
+    /**
+     * @param packageName - the package to look for
+     * @return - true if the package is installed
+     */
+    boolean isPackageInstalled(String packageName);
+
+    /**
+     * @return - a value that changes every time a package is installed or removed, -1 if the changes are not tracked
+     */
+    long getPackagesGeneration();
+
+    /**
+     * @return - the installed packages, null if they could not be enumerated
+     */
+    Collection<String> getInstalledPackages();
+
+    /**
+     * @param name - the name of an environment variable, like PATH
+     * @return - the value of the variable or null when it is not set
+     */
+    String getEnv(String name);
+
+    /**
+     * @param path - the complete path of a file
+     * @return - true if the file exists
+     */
+    boolean fileExists(String path);
+
+    /**
+     * @param path - the complete path of a directory
+     * @return - the names of the entries of the directory, null if it does not exist or can not be read
+     */
+    String[] listDirectory(String path);
+
+    /**
+     * @param path - the complete path of a file or directory
+     * @return - the time it was last modified, for a directory that is the last time an entry was added or removed,
+     * 0 if it does not exist
+     */
+    long lastModified(String path);
+
+    /**
+     * Checks every directory x name combination in one go
+     * @param directories - the directories to look in
+     * @param names - the file names to look for in every directory
+     * @return - the probe with the result for every combination
+     */
+    FileProbe probeFiles(String[] directories, String[] names);
+
+    /**
+     * @return - a stream of the mounts file in the format of /proc/self/mounts, the caller closes it
+     * @throws IOException - if the mounts can not be read
+     */
+    InputStream openMounts() throws IOException;
+
+    /**
+     * @return - reads the system properties
+     */
+    SystemPropertyReader getSystemProperties();
+
+    /**
+     * Runs a command and reads all of its output, the command is destroyed when it does not finish in time
+     * @param command - the command and its arguments
+     * @return - the standard output of the command
+     * @throws ProcessTimeoutException - if the command did not finish before its deadline
+     * @throws IOException - if the command could not be run
+     */
+    String runCommand(String... command) throws IOException;
+
+    /**
+     * Runs a short command in a shell that is shared between commands and scans, so it does not need its own process
+     * @param commandLine - the command as it would be typed in sh, like "mount"
+     * @return - the standard output of the command
+     * @throws ProcessTimeoutException - if the command did not finish before its deadline
+     * @throws IOException - if the command could not be run
+     */
+    String runInShell(String commandLine) throws IOException;
+}
@@ -0,0 +1,156 @@
+package com.leirens.jens.rootchecklib;
+
+import android.util.Log;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks a set of directory x file name candidates in one go and keeps the result in a compact bitset.
+ * The candidates are checked from native code with a single JNI call that stats every path,
+ * only when the native library is not available the java file api is used.
+ */
+public class FileProbe {
+
+    private static final String TAG = "FileProbe";
+
+    private static final boolean NATIVE_AVAILABLE = loadNativeLibrary();
+
+    private final String[] directories;
+    private final String[] names;
+    // bit (directory * names.length + name) is set when that file exists
+    private final byte[] bits;
+    private final boolean fromNative;
+
+    private FileProbe(String[] directories, String[] names, byte[] bits, boolean fromNative) {
+        this.directories = directories;
+        this.names = names;
+        this.bits = bits;
+        this.fromNative = fromNative;
+    }
+
+    /**
+     * @param directories - the directories to look in, like Const.suPaths
+     * @param names - the file names to look for in every directory
+     * @return - the probe with the result for every combination
+     */
+    public static FileProbe probe(String[] directories, String[] names) {
+        if (NATIVE_AVAILABLE) {
+            try {
+                byte[] bits = probeFiles(directories, names);
+                if (bits != null) {
+                    return new FileProbe(directories, names, bits, true);
+                }
+            } catch (UnsatisfiedLinkError e) {
+                RootCheckLog.e(TAG, "Native probe not available: " + e);
+            }
+        }
+
+        byte[] bits = new byte[(directories.length * names.length + 7) / 8];
+        for (int d = 0; d < directories.length; d++) {
+            for (int n = 0; n < names.length; n++) {
+                if (new File(directories[d], names[n]).exists()) {
+                    int bit = d * names.length + n;
+                    bits[bit >> 3] |= 1 << (bit & 7);
+                }
+            }
+        }
+        return new FileProbe(directories, names, bits, false);
+    }
+
+    /**
+     * Probes the files of an environment that is not the real device, like a fake device in the benchmarks.
+     * The environment stands in for the native stat calls, so the probe counts as native.
+     * @param directories - the directories to look in
+     * @param names - the file names to look for in every directory
+     * @param environment - answers whether a complete path exists
+     * @return - the probe with the result for every combination
+     */
+    public static FileProbe probe(String[] directories, String[] names, DeviceEnvironment environment) {
+        byte[] bits = new byte[(directories.length * names.length + 7) / 8];
+        for (int d = 0; d < directories.length; d++) {
+            for (int n = 0; n < names.length; n++) {
+                String directory = directories[d];
+                if (environment.fileExists(directory.endsWith("/") ? directory + names[n] : directory + "/" + names[n])) {
+                    int bit = d * names.length + n;
+                    bits[bit >> 3] |= 1 << (bit & 7);
+                }
+            }
+        }
+        return new FileProbe(directories, names, bits, true);
+    }
+
+    private static boolean loadNativeLibrary() {
+        try {
+            System.loadLibrary("native-lib");
+            setLogDebugMessages(RootCheckLog.isLoggable(Log.DEBUG));
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            RootCheckLog.e(TAG, "Could not load native-lib: " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Switches the debug logging of the native code, see {@link RootCheckLog#setLogger(RootCheckLogger)}
+     * @param enabled - true to log every probed path
+     */
+    static void setNativeDebugLogging(boolean enabled) {
+        if (NATIVE_AVAILABLE) {
+            setLogDebugMessages(enabled);
+        }
+    }
+
+    /**
+     * @return - true if the files were checked from native code
+     */
+    public boolean isFromNative() {
+        return fromNative;
+    }
+
+    /**
+     * @param name - a file name
+     * @return - true if the name was part of this probe
+     */
+    public boolean contains(String name) {
+        return indexOf(name) >= 0;
+    }
+
+    public boolean exists(int directory, int name) {
+        int bit = directory * names.length + name;
+        return (bits[bit >> 3] & (1 << (bit & 7))) != 0;
+    }
+
+    /**
+     * @param name - a file name that was part of this probe
+     * @return - the complete paths where the file exists, in the order of the directories
+     */
+    public List<String> findPaths(String name) {
+        List<String> paths = new ArrayList<>();
+        int n = indexOf(name);
+        if (n < 0) {
+            return paths;
+        }
+        for (int d = 0; d < directories.length; d++) {
+            if (exists(d, n)) {
+                String directory = directories[d];
+                paths.add(directory.endsWith("/") ? directory + name : directory + "/" + name);
+            }
+        }
+        return paths;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static native byte[] probeFiles(String[] directories, String[] names);
+
+    private static native void setLogDebugMessages(boolean debug);
+}
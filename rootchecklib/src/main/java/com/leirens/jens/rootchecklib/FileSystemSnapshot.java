@@ -0,0 +1,162 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "does file X exist in directory Y" for a set of directories from memory.
+ * The directories are de-duplicated once, every readable directory is listed a single time,
+ * the directories that can not be listed, like /sbin on recent devices, are checked for the candidate names with one
+ * native stat call. Only names that are not candidates in an unreadable directory need a stat of their own.
+ * A snapshot is taken once per scan, see {@link CheckContext#getFileSystemSnapshot()}.
+ */
+public class FileSystemSnapshot {
+
+    private final DeviceEnvironment environment;
+    private final String[] candidateNames;
+    // the entries of the directories that could be listed, by directory with a trailing slash
+    private final Map<String, String[]> listed = new HashMap<>();
+    // which candidate names were found in a listed directory, bit n for candidateNames[n]
+    private final Map<String, Long> listedCandidates = new HashMap<>();
+    // the directories that could not be listed, by directory, with their index in the probe
+    private final Map<String, Integer> probedIndexes = new HashMap<>();
+    private final FileProbe probe;
+
+    private FileSystemSnapshot(DeviceEnvironment environment, Set<String> directories, String[] candidateNames) {
+        this.environment = environment;
+        this.candidateNames = candidateNames;
+
+        List<String> unreadable = new ArrayList<>();
+        for (String directory : directories) {
+            String[] entries = environment.listDirectory(directory);
+            if (entries == null) {
+                probedIndexes.put(directory, unreadable.size());
+                unreadable.add(directory);
+                continue;
+            }
+            listed.put(directory, entries);
+            listedCandidates.put(directory, findCandidates(entries));
+        }
+
+        probe = unreadable.isEmpty() ? null
+                : environment.probeFiles(unreadable.toArray(new String[unreadable.size()]), candidateNames);
+    }
+
+    /**
+     * @param environment - the device to read
+     * @param directories - the directories to snapshot, with or without a trailing slash, duplicates are skipped
+     * @param candidateNames - the names that are looked up in every directory, at most 64
+     * @return - the snapshot of the directories
+     */
+    public static FileSystemSnapshot create(DeviceEnvironment environment, Collection<String> directories,
+                                            String[] candidateNames) {
+        if (candidateNames.length > 64) {
+            throw new IllegalArgumentException("at most 64 candidate names");
+        }
+        Set<String> normalized = new LinkedHashSet<>();
+        for (String directory : directories) {
+            String normalizedDirectory = normalizeDirectory(directory);
+            if (normalizedDirectory != null) {
+                normalized.add(normalizedDirectory);
+            }
+        }
+        return new FileSystemSnapshot(environment, normalized, candidateNames.clone());
+    }
+
+    /**
+     * @param directory - a directory like "/system/xbin" or "/system/xbin/"
+     * @return - the directory with exactly one trailing slash, null for an empty directory
+     */
+    public static String normalizeDirectory(String directory) {
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        int end = directory.length();
+        while (end > 1 && directory.charAt(end - 1) == '/') {
+            end--;
+        }
+        String trimmed = directory.substring(0, end);
+        return trimmed.equals("/") ? trimmed : trimmed + "/";
+    }
+
+    private long findCandidates(String[] entries) {
+        long found = 0;
+        for (String entry : entries) {
+            int n = indexOfCandidate(entry);
+            if (n >= 0) {
+                found |= 1L << n;
+            }
+        }
+        return found;
+    }
+
+    private int indexOfCandidate(String name) {
+        for (int i = 0; i < candidateNames.length; i++) {
+            if (candidateNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param directory - a directory, with or without a trailing slash
+     * @param name - a file name
+     * @return - true if the file exists in the directory
+     */
+    public boolean exists(String directory, String name) {
+        String normalizedDirectory = normalizeDirectory(directory);
+        if (normalizedDirectory == null) {
+            return false;
+        }
+        int n = indexOfCandidate(name);
+
+        String[] entries = listed.get(normalizedDirectory);
+        if (entries != null) {
+            if (n >= 0) {
+                return (listedCandidates.get(normalizedDirectory) & (1L << n)) != 0;
+            }
+            for (String entry : entries) {
+                if (entry.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Integer d = probedIndexes.get(normalizedDirectory);
+        if (d != null && n >= 0) {
+            return probe.exists(d, n);
+        }
+        // not part of the snapshot
+        return environment.fileExists(normalizedDirectory + name);
+    }
+
+    /**
+     * @param name - a file name
+     * @param directories - the directories to look in
+     * @return - the complete paths where the file exists, in the order of the directories
+     */
+    public List<String> findPaths(String name, Collection<String> directories) {
+        List<String> paths = new ArrayList<>();
+        for (String directory : directories) {
+            if (exists(directory, name)) {
+                paths.add(normalizeDirectory(directory) + name);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @param directory - a directory, with or without a trailing slash
+     * @return - true if the directory was listed, false if it was probed with stat or is not part of the snapshot
+     */
+    public boolean isListed(String directory) {
+        return listed.containsKey(normalizeDirectory(directory));
+    }
+}
@@ -0,0 +1,95 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * A single thing a check found, like an installed root app or a su binary.
+ * The text is only built when {@link #getMessage()} is called.
+ */
+public class Finding {
+
+    private final FindingCode code;
+    private final String detail;
+    private final String value;
+    private final Severity severity;
+
+    public Finding(FindingCode code) {
+        this(code, null, null);
+    }
+
+    /**
+     * @param code - what was found
+     * @param detail - where it was found, like the path, package or property name
+     */
+    public Finding(FindingCode code, String detail) {
+        this(code, detail, null);
+    }
+
+    /**
+     * @param code - what was found
+     * @param detail - where it was found, like the path, package or property name
+     * @param value - the value that was found, like the value of a property
+     */
+    public Finding(FindingCode code, String detail, String value) {
+        this(code, detail, value, Severity.HIGH);
+    }
+
+    /**
+     * @param code - what was found
+     * @param detail - where it was found, like the path, package or property name
+     * @param value - the value that was found, like the value of a property
+     * @param severity - how strong an indication of root the finding is
+     */
+    public Finding(FindingCode code, String detail, String value, Severity severity) {
+        this.code = code;
+        this.detail = detail;
+        this.value = value;
+        this.severity = severity;
+    }
+
+    public FindingCode getCode() {
+        return code;
+    }
+
+    public CheckCategory getCategory() {
+        return code.getCategory();
+    }
+
+    /**
+     * @return - the path, package or property name, null if the finding has no detail
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * @return - the value that was found, null if the finding has no value
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return - how strong an indication of root the finding is, HIGH unless the check knows better
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return - the human readable text of this finding
+     */
+    public String getMessage() {
+        StringBuilder sb = new StringBuilder(code.getPrefix());
+        if (detail != null) {
+            sb.append(detail);
+        }
+        if (value != null) {
+            sb.append(" = [").append(value).append(']');
+        }
+        return sb.append(code.getSuffix()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
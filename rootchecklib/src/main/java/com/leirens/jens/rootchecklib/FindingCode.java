@@ -0,0 +1,62 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * What a check found. The human readable text of a finding is the prefix, its detail and the suffix.
+ */
+public enum FindingCode {
+
+    ROOT_MANAGEMENT_APP(CheckCategory.ROOT_APPS, "Root app detected: ", ""),
+    DANGEROUS_APP(CheckCategory.DANGEROUS_APPS, "Root app detected: ", ""),
+    ROOT_CLOAKING_APP(CheckCategory.ROOT_CLOAKING_APPS, "Root app detected: ", ""),
+    SU_IN_PATH(CheckCategory.SU_PATH, "Path SU found", ""),
+    ROOT_ACCESS_GRANTED(CheckCategory.ROOT_ACCESS, "Root access is available", ""),
+    BINARY(CheckCategory.BINARIES, "", " binary detected"),
+    RW_PATH(CheckCategory.RW_PATHS, "Following RW path was detected: ", ""),
+    DANGEROUS_PROP(CheckCategory.DANGEROUS_PROPS, "Dangerous Property detected: ", ""),
+    TEST_KEYS(CheckCategory.BUILD_KEYS, "Test keys found", ""),
+    DEV_KEYS(CheckCategory.BUILD_KEYS, "Dev keys found", ""),
+    USB_DEBUGGING_ENABLED(CheckCategory.USB_DEBUGGING, "USB debugging enabled", ""),
+    EMULATOR_BOARD(CheckCategory.EMULATOR, "Emulator detected: Unknown board", ""),
+    EMULATOR_DEVICE(CheckCategory.EMULATOR, "Emulator detected: device contains generic", ""),
+    EMULATOR_HARDWARE(CheckCategory.EMULATOR, "Emulator detected: Hardware contained goldfish or ranchu", ""),
+    EMULATOR_MODEL(CheckCategory.EMULATOR, "Emulator detected: Build Model contains SDK or generic", ""),
+    EMULATOR_PRODUCT(CheckCategory.EMULATOR, "Emulator detected: product name contained SDK ", ""),
+    NATIVE_BINARY(CheckCategory.NATIVE_BINARIES, "Native found binary: ", ""),
+
+    /**
+     * For checks outside of this library, the detail is the whole text
+     */
+    CUSTOM(CheckCategory.CUSTOM, "", ""),
+
+    /**
+     * The detail is the id of the check, the value is what it threw
+     */
+    CHECK_FAILED(CheckCategory.FAILED_CHECKS, "Check failed: ", ""),
+
+    /**
+     * The detail is the command that was destroyed at its deadline
+     */
+    TIMED_OUT(CheckCategory.TIMEOUTS, "", " timed out");
+
+    private final CheckCategory category;
+    private final String prefix;
+    private final String suffix;
+
+    FindingCode(CheckCategory category, String prefix, String suffix) {
+        this.category = category;
+        this.prefix = prefix;
+        this.suffix = suffix;
+    }
+
+    public CheckCategory getCategory() {
+        return category;
+    }
+
+    String getPrefix() {
+        return prefix;
+    }
+
+    String getSuffix() {
+        return suffix;
+    }
+}
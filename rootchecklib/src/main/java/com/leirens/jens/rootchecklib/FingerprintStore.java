@@ -0,0 +1,35 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The last fingerprint and result of every {@link FingerprintedCheck} of an incremental root checker
+ */
+final class FingerprintStore {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return - the previous result of the check if it ran with the same fingerprint, otherwise null
+     */
+    CheckResult get(String checkId, long fingerprint) {
+        Entry entry = entries.get(checkId);
+        return entry != null && entry.fingerprint == fingerprint ? entry.result : null;
+    }
+
+    void put(String checkId, long fingerprint, CheckResult result) {
+        entries.put(checkId, new Entry(fingerprint, result));
+    }
+
+    private static final class Entry {
+
+        private final long fingerprint;
+        private final CheckResult result;
+
+        private Entry(long fingerprint, CheckResult result) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * A {@link RootCheck} that can tell cheaply whether its inputs changed since it last ran.
+ * In an incremental scan, see {@link RootChecker#setIncremental(boolean)}, the previous result of the check is reused
+ * as long as its fingerprint stays the same, so most re-scans only compute fingerprints.
+ */
+public interface FingerprintedCheck extends RootCheck {
+
+    /**
+     * Returned when the inputs could not be fingerprinted, the check always runs then
+     */
+    long NO_FINGERPRINT = Long.MIN_VALUE;
+
+    /**
+     * Must be much cheaper than {@link #run(CheckContext)} and change whenever the result of the check could change.
+     * It is computed before the check runs, on the same thread.
+     * @param context - the context of the scan
+     * @return - a value that changes when the inputs of the check change, or {@link #NO_FINGERPRINT}
+     */
+    long fingerprint(CheckContext context);
+}
@@ -0,0 +1,42 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * Builds the fingerprints of {@link FingerprintedCheck}s with 64 bit FNV-1a.
+ * Start with {@link #EMPTY} and add every input.
+ */
+public final class Fingerprints {
+
+    public static final long EMPTY = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fingerprints() {
+    }
+
+    public static long add(long fingerprint, long value) {
+        for (int i = 0; i < 64; i += 8) {
+            fingerprint = (fingerprint ^ ((value >>> i) & 0xff)) * PRIME;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @param value - may be null, which is different from an empty string
+     */
+    public static long add(long fingerprint, String value) {
+        if (value == null) {
+            return add(fingerprint, -1L);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            fingerprint = (fingerprint ^ value.charAt(i)) * PRIME;
+        }
+        return add(fingerprint, value.length());
+    }
+
+    public static long add(long fingerprint, byte[] bytes, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            fingerprint = (fingerprint ^ (bytes[i] & 0xff)) * PRIME;
+        }
+        return fingerprint;
+    }
+}
@@ -0,0 +1,138 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hash set of the installed packages.
+ * The packages are enumerated once with a single PackageManager call, after that the index is kept up to date
+ * from the package broadcasts, so looking up a package never needs a binder call.
+ * The set is replaced as a whole on every change, so a lookup never sees a half updated set and needs no lock.
+ */
+public class InstalledPackageIndex {
+
+    private static final String TAG = "InstalledPackageIndex";
+
+    private static InstalledPackageIndex instance;
+
+    private final Context context;
+    private final Object loadLock = new Object();
+    private volatile Set<String> packages = Collections.emptySet();
+    private volatile long generation;
+    // false until the packages are enumerated and again after a change that may concern any package
+    private volatile boolean loaded;
+
+    private InstalledPackageIndex(Context context) {
+        this.context = context.getApplicationContext();
+        // listen before the packages are enumerated, so no change between the two is missed
+        PackageChangeMonitor.get(context).addListener(new PackageChangeMonitor.Listener() {
+            @Override
+            public void onPackageChanged(String packageName, boolean installed) {
+                update(packageName, installed);
+            }
+        });
+    }
+
+    public static synchronized InstalledPackageIndex get(Context context) {
+        if (instance == null) {
+            instance = new InstalledPackageIndex(context);
+        }
+        return instance;
+    }
+
+    /**
+     * @param packageName - the package to look for
+     * @return - true if the package is installed
+     */
+    public boolean isInstalled(String packageName) {
+        ensureLoaded();
+        return packages.contains(packageName);
+    }
+
+    /**
+     * @return - the installed packages at the time of the call, it is empty if {@link #isLoaded()} is false
+     */
+    public Set<String> getPackages() {
+        ensureLoaded();
+        return packages;
+    }
+
+    /**
+     * Changes every time a package is installed or removed
+     * @return - the generation of the installed packages
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Called on the main thread, so it never enumerates the packages itself.
+     * @param packageName - the package that changed, null if any package may have changed
+     * @param installed - true if the package was installed or updated, false if it was removed
+     */
+    private synchronized void update(String packageName, boolean installed) {
+        if (packageName == null) {
+            // the next lookup enumerates the packages again, on the thread of that lookup
+            loaded = false;
+        } else {
+            Set<String> updated = new HashSet<>(packages);
+            if (installed) {
+                updated.add(packageName);
+            } else {
+                updated.remove(packageName);
+            }
+            packages = Collections.unmodifiableSet(updated);
+        }
+        generation++;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (loadLock) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    /**
+     * Enumerates the packages without holding the lock of the updates, so a broadcast never waits for the binder call
+     */
+    private void reload() {
+        long startGeneration = generation;
+        List<PackageInfo> installed;
+        try {
+            installed = context.getPackageManager().getInstalledPackages(0);
+        } catch (RuntimeException e) {
+            // the binder transaction can fail on devices with a lot of packages, fall back to asking per package
+            RootCheckLog.e(TAG, "Could not enumerate the installed packages: " + e);
+            return;
+        }
+        Set<String> enumerated = new HashSet<>(installed.size() * 2);
+        for (PackageInfo info : installed) {
+            enumerated.add(info.packageName);
+        }
+        synchronized (this) {
+            if (generation != startGeneration) {
+                // a package changed during the enumeration and may be missing from it, the next lookup tries again
+                return;
+            }
+            packages = Collections.unmodifiableSet(enumerated);
+            loaded = true;
+        }
+    }
+
+    /**
+     * @return - false if the packages could not be enumerated, {@link #isInstalled(String)} must not be trusted then
+     */
+    public boolean isLoaded() {
+        ensureLoaded();
+        return loaded;
+    }
+}
@@ -0,0 +1,202 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram per check with fixed buckets. Recording a duration is a binary search over the bucket bounds
+ * and a few lock-free increments, so it can stay registered in production.
+ * Only the checks that ran are recorded, cached and cancelled results are left out.
+ */
+public class LatencyHistogram implements CheckListener {
+
+    private static final long[] DEFAULT_UPPER_BOUNDS_NANOS = {
+            TimeUnit.MICROSECONDS.toNanos(50),
+            TimeUnit.MICROSECONDS.toNanos(100),
+            TimeUnit.MICROSECONDS.toNanos(250),
+            TimeUnit.MICROSECONDS.toNanos(500),
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MICROSECONDS.toNanos(2500),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(25),
+            TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(250),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(2500),
+            TimeUnit.SECONDS.toNanos(5)
+    };
+
+    private final long[] upperBoundsNanos;
+    private final ConcurrentMap<String, Buckets> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Uses buckets from 50 microseconds up to 5 seconds
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_UPPER_BOUNDS_NANOS);
+    }
+
+    /**
+     * @param upperBoundsNanos - the inclusive upper bound of every bucket in ascending order,
+     *                         durations above the last bound go in an extra overflow bucket
+     */
+    public LatencyHistogram(long[] upperBoundsNanos) {
+        if (upperBoundsNanos.length == 0) {
+            throw new IllegalArgumentException("no buckets");
+        }
+        for (int i = 1; i < upperBoundsNanos.length; i++) {
+            if (upperBoundsNanos[i] <= upperBoundsNanos[i - 1]) {
+                throw new IllegalArgumentException("bucket bounds must be ascending");
+            }
+        }
+        this.upperBoundsNanos = upperBoundsNanos.clone();
+    }
+
+    @Override
+    public void onCheckStarted(String checkId) {
+    }
+
+    @Override
+    public void onCheckFinished(String checkId, CheckOutcome outcome, long durationNanos, Throwable error) {
+        if (outcome == CheckOutcome.CACHED || outcome == CheckOutcome.CANCELLED) {
+            return;
+        }
+        bucketsOf(checkId).record(bucketIndex(durationNanos), durationNanos);
+    }
+
+    private int bucketIndex(long durationNanos) {
+        int index = Arrays.binarySearch(upperBoundsNanos, durationNanos);
+        // not found returns -(insertion point) - 1, the insertion point is the first bound above the duration
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private Buckets bucketsOf(String checkId) {
+        Buckets buckets = histograms.get(checkId);
+        if (buckets == null) {
+            Buckets created = new Buckets(upperBoundsNanos.length + 1);
+            buckets = histograms.putIfAbsent(checkId, created);
+            if (buckets == null) {
+                buckets = created;
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * @return - the inclusive upper bound of every bucket, without the overflow bucket
+     */
+    public long[] getUpperBoundsNanos() {
+        return upperBoundsNanos.clone();
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @return - the number of durations in every bucket, the last one is the overflow bucket
+     */
+    public long[] getBucketCounts(String checkId) {
+        long[] counts = new long[upperBoundsNanos.length + 1];
+        Buckets buckets = histograms.get(checkId);
+        if (buckets != null) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.counts.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @return - the number of recorded durations
+     */
+    public long getCount(String checkId) {
+        Buckets buckets = histograms.get(checkId);
+        return buckets != null ? buckets.count.get() : 0;
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @return - the sum of the recorded durations
+     */
+    public long getTotalNanos(String checkId) {
+        Buckets buckets = histograms.get(checkId);
+        return buckets != null ? buckets.totalNanos.get() : 0;
+    }
+
+    /**
+     * @param checkId - the id of a check
+     * @return - the longest recorded duration
+     */
+    public long getMaxNanos(String checkId) {
+        Buckets buckets = histograms.get(checkId);
+        return buckets != null ? buckets.maxNanos.get() : 0;
+    }
+
+    /**
+     * The percentile is only as precise as the buckets, it is the upper bound of the bucket it falls in
+     * @param checkId - the id of a check
+     * @param percentile - between 0 and 100, like 99 for the p99
+     * @return - the upper bound of the bucket of the percentile, the max duration for the overflow bucket,
+     * 0 if nothing was recorded
+     */
+    public long getPercentileNanos(String checkId, double percentile) {
+        long[] counts = getBucketCounts(checkId);
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < upperBoundsNanos.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return upperBoundsNanos[i];
+            }
+        }
+        return getMaxNanos(checkId);
+    }
+
+    /**
+     * @return - the ids of the checks that were recorded
+     */
+    public Set<String> getCheckIds() {
+        return Collections.unmodifiableSet(histograms.keySet());
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+
+    private static final class Buckets {
+
+        private final AtomicLongArray counts;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Buckets(int size) {
+            counts = new AtomicLongArray(size);
+        }
+
+        private void record(int bucket, long durationNanos) {
+            counts.incrementAndGet(bucket);
+            count.incrementAndGet();
+            totalNanos.addAndGet(durationNanos);
+            long max = maxNanos.get();
+            while (durationNanos > max && !maxNanos.compareAndSet(max, durationNanos)) {
+                max = maxNanos.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.leirens.jens.rootchecklib;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executes the given commands on the main (UI) thread.
+ */
+class MainThreadExecutor implements Executor {
+
+    private static MainThreadExecutor instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor() {
+    }
+
+    static synchronized MainThreadExecutor get() {
+        if (instance == null) {
+            instance = new MainThreadExecutor();
+        }
+        return instance;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        handler.post(command);
+    }
+}
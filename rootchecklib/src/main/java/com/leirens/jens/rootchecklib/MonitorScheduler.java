@@ -0,0 +1,18 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.concurrent.Future;
+
+/**
+ * Runs the delayed scans of a {@link RootMonitor}.
+ * The default scheduler uses a background thread, an app can schedule the scans with JobScheduler or WorkManager instead,
+ * or run them on a fake clock in tests.
+ */
+public interface MonitorScheduler {
+
+    /**
+     * @param task - the task to run once
+     * @param delayMillis - how long to wait before the task runs
+     * @return - a handle that is cancelled when the task is not needed anymore
+     */
+    Future<?> schedule(Runnable task, long delayMillis);
+}
@@ -0,0 +1,136 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams /proc/self/mounts without spawning the mount command.
+ * The file is read in a reusable buffer and every line is parsed in place, only the mount points that are mounted
+ * read-write are turned into a String, so memory stays flat on devices with hundreds of mounts.
+ * A reader is not thread safe, use one reader per thread.
+ */
+public class MountsReader {
+
+    private final byte[] buffer = new byte[8192];
+    private byte[] line = new byte[512];
+    private int lineLength;
+
+    /**
+     * Finds the given mount points that are mounted with the rw option
+     * @param in - the mounts file, see {@link DeviceEnvironment#openMounts()}, it is closed when done
+     * @param mountPoints - the mount points to look for, in lower case
+     * @return - the mount points of the set that are mounted read-write
+     * @throws IOException - if the mounts file can not be read
+     */
+    public List<String> findWritableMounts(InputStream in, Set<String> mountPoints) throws IOException {
+        List<String> result = new ArrayList<>();
+        try {
+            lineLength = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        checkLine(mountPoints, result);
+                        lineLength = 0;
+                    } else {
+                        appendToLine(b);
+                    }
+                }
+            }
+            if (lineLength > 0) {
+                checkLine(mountPoints, result);
+            }
+        } finally {
+            in.close();
+        }
+        return result;
+    }
+
+    private void appendToLine(byte b) {
+        if (lineLength == line.length) {
+            byte[] bigger = new byte[line.length * 2];
+            System.arraycopy(line, 0, bigger, 0, lineLength);
+            line = bigger;
+        }
+        line[lineLength++] = b;
+    }
+
+    /**
+     * A line looks like "device mountpoint type options dump pass"
+     */
+    private void checkLine(Set<String> mountPoints, List<String> result) {
+        int mountPointStart = indexOf(' ', 0) + 1;
+        int mountPointEnd = indexOf(' ', mountPointStart);
+        int typeEnd = indexOf(' ', mountPointEnd + 1);
+        if (mountPointStart == 0 || mountPointEnd < 0 || typeEnd < 0) {
+            // not enough fields, skip this line
+            return;
+        }
+        int optionsStart = typeEnd + 1;
+        int optionsEnd = indexOf(' ', optionsStart);
+        if (optionsEnd < 0) {
+            optionsEnd = lineLength;
+        }
+
+        if (hasRwOption(optionsStart, optionsEnd)) {
+            String mountPoint = decodeMountPoint(mountPointStart, mountPointEnd);
+            if (mountPoints.contains(mountPoint)) {
+                result.add(mountPoint);
+            }
+        }
+    }
+
+    private int indexOf(char c, int from) {
+        if (from < 0) {
+            return -1;
+        }
+        for (int i = from; i < lineLength; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares every comma separated option against "rw" to avoid false positives like "rw=..."
+     */
+    private boolean hasRwOption(int start, int end) {
+        int optionStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || line[i] == ',') {
+                if (i - optionStart == 2
+                        && (line[optionStart] | 0x20) == 'r'
+                        && (line[optionStart + 1] | 0x20) == 'w') {
+                    return true;
+                }
+                optionStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The kernel escapes spaces, tabs, newlines and backslashes in mount points as octal, like \040
+     */
+    private String decodeMountPoint(int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = (char) (line[i] & 0xff);
+            if (c == '\\' && i + 3 < end && isOctal(i + 1) && isOctal(i + 2) && isOctal(i + 3)) {
+                c = (char) (((line[i + 1] - '0') << 6) | ((line[i + 2] - '0') << 3) | (line[i + 3] - '0'));
+                i += 3;
+            }
+            sb.append(Character.toLowerCase(c));
+        }
+        return sb.toString();
+    }
+
+    private boolean isOctal(int index) {
+        return line[index] >= '0' && line[index] <= '7';
+    }
+}
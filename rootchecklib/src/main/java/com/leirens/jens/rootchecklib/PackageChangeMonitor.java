@@ -0,0 +1,76 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listens for installed, replaced and removed packages and notifies its listeners.
+ * There is one monitor per process, it registers its receiver on the application context when the first listener is added.
+ */
+public class PackageChangeMonitor {
+
+    private static PackageChangeMonitor instance;
+
+    private final Context context;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private boolean registered;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String packageName = intent.getData() != null ? intent.getData().getSchemeSpecificPart() : null;
+            // an update sends a removed broadcast with EXTRA_REPLACING before the package is added again
+            boolean installed = !Intent.ACTION_PACKAGE_REMOVED.equals(intent.getAction())
+                    || intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            for (Listener listener : listeners) {
+                listener.onPackageChanged(packageName, installed);
+            }
+        }
+    };
+
+    private PackageChangeMonitor(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized PackageChangeMonitor get(Context context) {
+        if (instance == null) {
+            instance = new PackageChangeMonitor(context);
+        }
+        return instance;
+    }
+
+    public synchronized void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+        if (!registered) {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+            filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+            filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+            filter.addDataScheme("package");
+            context.registerReceiver(receiver, filter);
+            registered = true;
+        }
+    }
+
+    public synchronized void removeListener(Listener listener) {
+        listeners.remove(listener);
+        if (registered && listeners.isEmpty()) {
+            context.unregisterReceiver(receiver);
+            registered = false;
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * Called on the main thread when a package is installed, replaced or removed
+         * @param packageName - the package that changed, null if unknown
+         * @param installed - true if the package is installed now, false if it was removed
+         */
+        void onPackageChanged(String packageName, boolean installed);
+    }
+}
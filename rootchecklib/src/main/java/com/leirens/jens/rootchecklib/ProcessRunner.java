@@ -0,0 +1,141 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs external processes, like su, mount or getprop, under a deadline.
+ * The output is read on a shared reader thread while the caller waits at most until the deadline,
+ * a process that is still running then is destroyed and the call fails with a {@link ProcessTimeoutException}.
+ * su can wait for the grant dialog of a root manager forever, without a deadline that would block the whole scan.
+ * Waiting also stops when the calling thread is interrupted, for example when a scan is cancelled.
+ */
+public class ProcessRunner {
+
+    private static final String TAG = "ProcessRunner";
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+
+    private static ProcessRunner defaultRunner;
+    private static ExecutorService readers;
+
+    private final long timeoutMillis;
+
+    /**
+     * @param timeoutMillis - how long a process may run before it is destroyed
+     */
+    public ProcessRunner(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis <= 0");
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return - the runner with {@link #DEFAULT_TIMEOUT_MILLIS}
+     */
+    public static synchronized ProcessRunner getDefault() {
+        if (defaultRunner == null) {
+            defaultRunner = new ProcessRunner(DEFAULT_TIMEOUT_MILLIS);
+        }
+        return defaultRunner;
+    }
+
+    /**
+     * A reader normally finishes when its process is destroyed, but a child process that outlives it may keep the
+     * output open, so the readers are not bounded and the caller never waits for one
+     */
+    static synchronized ExecutorService getReaders() {
+        if (readers == null) {
+            readers = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-process-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return readers;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Runs a command and reads all of its standard output
+     * @param command - the command and its arguments
+     * @return - the standard output of the command
+     * @throws ProcessTimeoutException - if the command did not finish before the deadline
+     * @throws InterruptedIOException - if the calling thread was interrupted while it waited
+     * @throws IOException - if the command could not be run
+     */
+    public String run(String... command) throws IOException {
+        final Process process = new ProcessBuilder().command(command).start();
+        Future<String> output = getReaders().submit(new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return readAll(process.getInputStream());
+            }
+        });
+
+        try {
+            return output.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ProcessTimeoutException(join(command), timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(join(command) + " was interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            process.destroy();
+            try {
+                process.getInputStream().close();
+            } catch (IOException e) {
+                RootCheckLog.e(TAG, "Could not close the process output: " + e);
+            }
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        Reader reader = new InputStreamReader(in);
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[1024];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            sb.append(buffer, 0, read);
+        }
+        return sb.toString();
+    }
+
+    private static String join(String[] command) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : command) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+}
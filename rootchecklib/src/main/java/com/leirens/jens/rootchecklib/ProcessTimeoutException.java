@@ -0,0 +1,29 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an external process did not finish before its deadline, the process has been destroyed
+ */
+public class ProcessTimeoutException extends IOException {
+
+    private final String commandLine;
+    private final long timeoutMillis;
+
+    public ProcessTimeoutException(String commandLine, long timeoutMillis) {
+        super(commandLine + " timed out after " + timeoutMillis + " ms");
+        this.commandLine = commandLine;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return - the command and its arguments separated by spaces, like "su -c id"
+     */
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
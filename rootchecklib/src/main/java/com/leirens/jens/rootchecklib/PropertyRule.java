@@ -0,0 +1,103 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.Locale;
+
+/**
+ * A system property value that should not be found on a production device.
+ * In the {@link SignatureSet#DANGEROUS_PROPS} of the signature database a rule is written as
+ * <pre>
+ * [severity ]key=value    the property has this value
+ * [severity ]key!=value   the property is set to any other value
+ * </pre>
+ * like "ro.secure=0" or "medium ro.boot.verifiedbootstate!=green". A rule without severity is {@link Severity#HIGH}.
+ */
+public class PropertyRule {
+
+    private final String key;
+    private final String value;
+    private final boolean negated;
+    private final Severity severity;
+
+    /**
+     * @param key - the exact name of the property
+     * @param value - the value to compare with
+     * @param negated - false to match the value, true to match every other value
+     * @param severity - the severity of the finding when the rule matches
+     */
+    public PropertyRule(String key, String value, boolean negated, Severity severity) {
+        if (key == null || key.isEmpty() || value == null || severity == null) {
+            throw new IllegalArgumentException("Invalid rule for " + key);
+        }
+        this.key = key;
+        this.value = value;
+        this.negated = negated;
+        this.severity = severity;
+    }
+
+    /**
+     * @param rule - the rule as it is written in the signature database
+     * @return - the rule
+     * @throws IllegalArgumentException - if the rule can not be parsed
+     */
+    public static PropertyRule parse(String rule) {
+        Severity severity = Severity.HIGH;
+        int equals = rule.indexOf('=');
+        int space = rule.indexOf(' ');
+        if (space > 0 && (equals < 0 || space < equals)) {
+            try {
+                severity = Severity.valueOf(rule.substring(0, space).toUpperCase(Locale.US));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown severity in rule " + rule);
+            }
+            rule = rule.substring(space + 1);
+            equals = rule.indexOf('=');
+        }
+        if (equals <= 0) {
+            throw new IllegalArgumentException("Invalid rule " + rule);
+        }
+        boolean negated = rule.charAt(equals - 1) == '!';
+        String key = rule.substring(0, negated ? equals - 1 : equals);
+        return new PropertyRule(key, rule.substring(equals + 1), negated, severity);
+    }
+
+    /**
+     * @return - the exact name of the property
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return - the value the rule compares with
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * @return - true if the rule matches every value except {@link #getValue()}
+     */
+    public boolean isNegated() {
+        return negated;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @param actualValue - the value of the property, null if it is not set
+     * @return - true if the value is dangerous, a property that is not set never matches
+     */
+    public boolean matches(String actualValue) {
+        return actualValue != null && actualValue.equals(value) != negated;
+    }
+
+    /**
+     * @return - the rule as it is written in the signature database
+     */
+    @Override
+    public String toString() {
+        return severity.name().toLowerCase(Locale.US) + ' ' + key + (negated ? "!=" : "=") + value;
+    }
+}
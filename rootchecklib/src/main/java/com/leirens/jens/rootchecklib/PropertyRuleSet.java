@@ -0,0 +1,100 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link PropertyRule}s of a signature database, grouped by property.
+ * Every property is read once, however many rules test it, so a scan does one lookup per property.
+ */
+public class PropertyRuleSet {
+
+    private static final String TAG = "PropertyRuleSet";
+
+    // in the order of the first rule of every property, so the findings keep the order of the database
+    private final Map<String, PropertyRule[]> rulesByKey = new LinkedHashMap<>();
+    // the properties that are not read-only, like service.adb.root, their value can change without a reboot
+    private final List<String> mutableKeys = new ArrayList<>();
+    private final int size;
+
+    /**
+     * @param rules - the rules as they are written in the signature database, invalid rules are logged and skipped
+     */
+    public PropertyRuleSet(Collection<String> rules) {
+        Map<String, List<PropertyRule>> grouped = new LinkedHashMap<>();
+        int count = 0;
+        for (String text : rules) {
+            PropertyRule rule;
+            try {
+                rule = PropertyRule.parse(text);
+            } catch (IllegalArgumentException e) {
+                RootCheckLog.e(TAG, e.getMessage());
+                continue;
+            }
+            List<PropertyRule> forKey = grouped.get(rule.getKey());
+            if (forKey == null) {
+                forKey = new ArrayList<>(1);
+                grouped.put(rule.getKey(), forKey);
+            }
+            forKey.add(rule);
+            count++;
+        }
+        for (Map.Entry<String, List<PropertyRule>> entry : grouped.entrySet()) {
+            List<PropertyRule> forKey = entry.getValue();
+            rulesByKey.put(entry.getKey(), forKey.toArray(new PropertyRule[forKey.size()]));
+            if (!entry.getKey().startsWith("ro.")) {
+                mutableKeys.add(entry.getKey());
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * @return - the number of valid rules
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param fingerprint - the fingerprint to add the values to
+     * @param properties - reads the system properties
+     * @return - the fingerprint with the current values of the properties that can change without a reboot,
+     * the ro. properties are read-only until the next reboot
+     */
+    public long addMutableValues(long fingerprint, SystemPropertyReader properties) {
+        for (String key : mutableKeys) {
+            fingerprint = Fingerprints.add(fingerprint, properties.get(key));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Reads every property that has a rule once and tests its rules
+     * @param properties - reads the system properties
+     * @param findings - gets a {@link FindingCode#DANGEROUS_PROP} for every rule that matches
+     * @return - the highest severity of the rules that matched, null if no rule matched
+     */
+    public Severity evaluate(SystemPropertyReader properties, List<Finding> findings) {
+        Severity highest = null;
+        for (Map.Entry<String, PropertyRule[]> entry : rulesByKey.entrySet()) {
+            String key = entry.getKey();
+            String value = properties.get(key);
+            if (value == null) {
+                continue;
+            }
+            for (PropertyRule rule : entry.getValue()) {
+                if (rule.matches(value)) {
+                    findings.add(new Finding(FindingCode.DANGEROUS_PROP, key, value, rule.getSeverity()));
+                    if (highest == null || rule.getSeverity().compareTo(highest) > 0) {
+                        highest = rule.getSeverity();
+                    }
+                }
+            }
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,26 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * A single probe that looks for a sign of root.
+ * Checks are registered in a {@link RootCheckRegistry} and may run concurrently with other checks,
+ * so an implementation must not keep state between runs.
+ */
+public interface RootCheck {
+
+    /**
+     * @return - a stable id that is unique within a registry, see {@link CheckIds} for the built-in checks
+     */
+    String getId();
+
+    /**
+     * @return - an estimate of how expensive the check is
+     */
+    CheckCost getCost();
+
+    /**
+     * Runs the check
+     * @param context - gives access to the device for the duration of one scan
+     * @return - the result of the check, never null
+     */
+    CheckResult run(CheckContext context);
+}
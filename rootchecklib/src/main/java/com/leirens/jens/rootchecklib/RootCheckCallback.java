@@ -0,0 +1,13 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * Receives the outcome of {@link RootChecker#isDeviceRootedAsync(RootCheckCallback)}.
+ */
+public interface RootCheckCallback {
+
+    /**
+     * Called once when all checks have finished, unless the task was cancelled before.
+     * @param result - the verdict and the findings, {@link RootCheckResult#getReasons()} gives the readable reasons
+     */
+    void onResult(RootCheckResult result);
+}
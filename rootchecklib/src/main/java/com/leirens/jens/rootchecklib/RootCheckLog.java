@@ -0,0 +1,94 @@
+package com.leirens.jens.rootchecklib;
+
+import android.util.Log;
+
+/**
+ * Logging of the library. By default only warnings and errors go to logcat,
+ * call sites check {@link #isLoggable(int)} before they build a message.
+ */
+public final class RootCheckLog {
+
+    /**
+     * Logs nothing
+     */
+    public static final RootCheckLogger NONE = new RootCheckLogger() {
+        @Override
+        public boolean isLoggable(int priority) {
+            return false;
+        }
+
+        @Override
+        public void log(int priority, String tag, String message, Throwable error) {
+        }
+    };
+
+    private static volatile RootCheckLogger logger = logcat(Log.WARN);
+
+    private RootCheckLog() {
+    }
+
+    /**
+     * @param minPriority - the lowest priority that is logged, like android.util.Log.INFO
+     * @return - a logger that writes to logcat
+     */
+    public static RootCheckLogger logcat(final int minPriority) {
+        return new RootCheckLogger() {
+            @Override
+            public boolean isLoggable(int priority) {
+                return priority >= minPriority;
+            }
+
+            @Override
+            public void log(int priority, String tag, String message, Throwable error) {
+                if (error != null) {
+                    message = message + '\n' + Log.getStackTraceString(error);
+                }
+                Log.println(priority, tag, message);
+            }
+        };
+    }
+
+    /**
+     * Replaces the logger of the library, this also switches the debug logging of the native code
+     * @param newLogger - the logger to use, {@link #NONE} to log nothing
+     */
+    public static void setLogger(RootCheckLogger newLogger) {
+        logger = newLogger != null ? newLogger : NONE;
+        FileProbe.setNativeDebugLogging(logger.isLoggable(Log.DEBUG));
+    }
+
+    public static RootCheckLogger getLogger() {
+        return logger;
+    }
+
+    public static boolean isLoggable(int priority) {
+        return logger.isLoggable(priority);
+    }
+
+    public static void d(String tag, String message) {
+        log(Log.DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        log(Log.INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        log(Log.WARN, tag, message, null);
+    }
+
+    public static void e(String tag, String message) {
+        log(Log.ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        log(Log.ERROR, tag, message, error);
+    }
+
+    private static void log(int priority, String tag, String message, Throwable error) {
+        RootCheckLogger current = logger;
+        if (current.isLoggable(priority)) {
+            current.log(priority, tag, message, error);
+        }
+    }
+}
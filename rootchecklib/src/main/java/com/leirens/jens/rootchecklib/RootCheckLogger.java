@@ -0,0 +1,23 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * Receives the log messages of the library, see {@link RootCheckLog#setLogger(RootCheckLogger)}.
+ * The priorities are the ones of android.util.Log.
+ */
+public interface RootCheckLogger {
+
+    /**
+     * Called before a message is built, so messages that are not logged cost nothing
+     * @param priority - like android.util.Log.INFO
+     * @return - true if messages with this priority should be logged
+     */
+    boolean isLoggable(int priority);
+
+    /**
+     * @param priority - like android.util.Log.INFO
+     * @param tag - the tag of the message
+     * @param message - the message
+     * @param error - the error that caused the message, may be null
+     */
+    void log(int priority, String tag, String message, Throwable error);
+}
@@ -0,0 +1,141 @@
+package com.leirens.jens.rootchecklib;
+
+import com.leirens.jens.rootchecklib.Checks.BinaryCheck;
+import com.leirens.jens.rootchecklib.Checks.BuildTagsCheck;
+import com.leirens.jens.rootchecklib.Checks.DangerousPropsCheck;
+import com.leirens.jens.rootchecklib.Checks.EmulatorCheck;
+import com.leirens.jens.rootchecklib.Checks.NativeBinaryCheck;
+import com.leirens.jens.rootchecklib.Checks.PackageCheck;
+import com.leirens.jens.rootchecklib.Checks.RWPathsCheck;
+import com.leirens.jens.rootchecklib.Checks.SuPathCheck;
+import com.leirens.jens.rootchecklib.Checks.UsbDebuggingCheck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An ordered set of checks, the reasons of a scan are reported in the order the checks were registered.
+ * Use {@link #select(String...)}, {@link #without(String...)} and {@link #withMaxCost(CheckCost)} to run only a subset
+ * and {@link #register(RootCheck)} to add your own checks.
+ */
+public class RootCheckRegistry {
+
+    private final Map<String, RootCheck> checks = new LinkedHashMap<>();
+
+    public RootCheckRegistry() {
+    }
+
+    /**
+     * @return - a new registry with all built-in checks
+     */
+    public static RootCheckRegistry createDefault() {
+        RootCheckRegistry registry = new RootCheckRegistry();
+
+        // App checks
+        registry.register(new PackageCheck(CheckIds.ROOT_MANAGEMENT_APPS, SignatureSet.ROOT_MANAGEMENT_APPS,
+                FindingCode.ROOT_MANAGEMENT_APP, "Root management apps"));
+        registry.register(new PackageCheck(CheckIds.DANGEROUS_APPS, SignatureSet.DANGEROUS_APPS,
+                FindingCode.DANGEROUS_APP, "Dangerous apps"));
+        registry.register(new PackageCheck(CheckIds.ROOT_CLOAKING_APPS, SignatureSet.ROOT_CLOAKING_APPS,
+                FindingCode.ROOT_CLOAKING_APP, "RootCloaking apps"));
+
+        // Paths and Binary checks
+        registry.register(new SuPathCheck());
+        registry.register(new BinaryCheck(CheckIds.SU_BINARY, "su"));
+        registry.register(new BinaryCheck(CheckIds.MAGISK_BINARY, "magisk"));
+        registry.register(new BinaryCheck(CheckIds.BUSYBOX_BINARY, "busybox"));
+        registry.register(new RWPathsCheck());
+        registry.register(new DangerousPropsCheck());
+        registry.register(new BuildTagsCheck(CheckIds.TEST_KEYS, "test-keys", FindingCode.TEST_KEYS));
+        registry.register(new BuildTagsCheck(CheckIds.DEV_KEYS, "dev-keys", FindingCode.DEV_KEYS));
+
+        // external monitoring
+        registry.register(new UsbDebuggingCheck());
+
+        //emulator check
+        registry.register(new EmulatorCheck());
+
+        //native check
+        registry.register(new NativeBinaryCheck());
+
+        return registry;
+    }
+
+    /**
+     * Adds a check, a check with the same id is replaced
+     * @param check - the check to add
+     * @return - this registry
+     */
+    public synchronized RootCheckRegistry register(RootCheck check) {
+        checks.put(check.getId(), check);
+        return this;
+    }
+
+    /**
+     * @param id - the id of the check to remove
+     * @return - true if a check was removed
+     */
+    public synchronized boolean unregister(String id) {
+        return checks.remove(id) != null;
+    }
+
+    public synchronized RootCheck get(String id) {
+        return checks.get(id);
+    }
+
+    /**
+     * @return - a copy of the registered checks in registration order
+     */
+    public synchronized List<RootCheck> getChecks() {
+        return new ArrayList<>(checks.values());
+    }
+
+    /**
+     * @param ids - the ids of the checks to keep
+     * @return - a new registry with only the given checks
+     */
+    public synchronized RootCheckRegistry select(String... ids) {
+        Set<String> selected = new HashSet<>(Arrays.asList(ids));
+        RootCheckRegistry registry = new RootCheckRegistry();
+        for (RootCheck check : checks.values()) {
+            if (selected.contains(check.getId())) {
+                registry.register(check);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @param ids - the ids of the checks to skip
+     * @return - a new registry without the given checks
+     */
+    public synchronized RootCheckRegistry without(String... ids) {
+        Set<String> skipped = new HashSet<>(Arrays.asList(ids));
+        RootCheckRegistry registry = new RootCheckRegistry();
+        for (RootCheck check : checks.values()) {
+            if (!skipped.contains(check.getId())) {
+                registry.register(check);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * @param maxCost - the most expensive cost that is allowed
+     * @return - a new registry without the checks that are more expensive than maxCost
+     */
+    public synchronized RootCheckRegistry withMaxCost(CheckCost maxCost) {
+        RootCheckRegistry registry = new RootCheckRegistry();
+        for (RootCheck check : checks.values()) {
+            if (check.getCost().compareTo(maxCost) <= 0) {
+                registry.register(check);
+            }
+        }
+        return registry;
+    }
+}
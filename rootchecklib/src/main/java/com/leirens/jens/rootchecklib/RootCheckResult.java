@@ -0,0 +1,72 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a scan: the verdict, the findings of all checks that ran and a mask of the categories that were found.
+ */
+public class RootCheckResult {
+
+    static final RootCheckResult EMPTY = new RootCheckResult(false, Collections.<Finding>emptyList());
+
+    private final boolean rooted;
+    private final List<Finding> findings;
+    private final int categoryMask;
+    private volatile List<String> reasons;
+
+    public RootCheckResult(boolean rooted, List<Finding> findings) {
+        this.rooted = rooted;
+        this.findings = Collections.unmodifiableList(findings);
+        int mask = 0;
+        for (Finding finding : findings) {
+            mask |= finding.getCategory().mask();
+        }
+        this.categoryMask = mask;
+    }
+
+    /**
+     * @return - true if the device seems to be rooted
+     */
+    public boolean isRooted() {
+        return rooted;
+    }
+
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    /**
+     * @return - a bit per {@link CheckCategory} that has at least one finding, see {@link CheckCategory#mask()}
+     */
+    public int getCategoryMask() {
+        return categoryMask;
+    }
+
+    public boolean hasCategory(CheckCategory category) {
+        return (categoryMask & category.mask()) != 0;
+    }
+
+    /**
+     * The text of every finding, built the first time it is asked for
+     * @return - the reasons why the device is seen as rooted
+     */
+    public List<String> getReasons() {
+        List<String> result = reasons;
+        if (result == null) {
+            List<String> messages = new ArrayList<>(findings.size());
+            for (Finding finding : findings) {
+                messages.add(finding.getMessage());
+            }
+            result = Collections.unmodifiableList(messages);
+            reasons = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RootCheckResult{rooted=" + rooted + ", findings=" + findings + "}";
+    }
+}
@@ -0,0 +1,59 @@
+package com.leirens.jens.rootchecklib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle to a running asynchronous root check.
+ * Cancelling it stops the running checks and makes sure the callback is never called.
+ */
+public class RootCheckTask {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int CANCELLED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private CheckEngine.Scan scan;
+
+    RootCheckTask() {
+    }
+
+    synchronized void setScan(CheckEngine.Scan scan) {
+        this.scan = scan;
+        if (isCancelled()) {
+            scan.cancel();
+        }
+    }
+
+    /**
+     * Marks the task as done right before the callback is called.
+     * @return - false if the task was cancelled and the result must not be delivered
+     */
+    boolean markDone() {
+        return state.compareAndSet(RUNNING, DONE);
+    }
+
+    /**
+     * Cancels the check, running checks are interrupted and the callback will not be called.
+     * @return - false if the result was already delivered or the task was already cancelled
+     */
+    public boolean cancel() {
+        if (!state.compareAndSet(RUNNING, CANCELLED)) {
+            return false;
+        }
+        synchronized (this) {
+            if (scan != null) {
+                scan.cancel();
+            }
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    public boolean isDone() {
+        return state.get() != RUNNING;
+    }
+}
@@ -1,472 +1,206 @@
 package com.leirens.jens.rootchecklib;
 
 import android.content.Context;
-import android.content.pm.PackageManager;
-import android.os.Build;
-import android.provider.Settings;
-import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import com.leirens.jens.rootchecklib.Checks.NativeBinaryCheck;
+
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.Scanner;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 public class RootChecker {
 
-    private List<String> reasons;
-    private Context c;
+    private volatile RootCheckResult result;
+    private final DeviceEnvironment environment;
+    private final RootCheckRegistry registry;
+    private final CheckEngine engine;
+    private volatile CheckResultCache cache;
+    private volatile FingerprintStore fingerprints;
 
     public RootChecker(Context c) {
-        this.c = c ;
-        this.reasons = new ArrayList<>();
-    }
-
-    public List<String> getReasons() {
-        return reasons;
-    }
-
-    public boolean isDeviceRooted() {
-        reasons.clear();
-
-        // App checks
-        boolean rootManagementAppFound = detectRootManagementApps();
-        boolean dangerousAppsFound = detectPotentiallyDangerousApps();
-        boolean rootCloakingAppFound = detectRootCloakingApps();
-
-        // Paths and Binary checks
-        boolean suPathFound = checkForSUPath();
-        boolean suBinaryFound = checkForSuBinary();
-        boolean magiskFound = checkForMagiskBinary();
-        boolean busyboxFound = checkForBusyBoxBinary();
-        boolean rwPathsFound = checkForRWPaths();
-        boolean dangerousPropertiesFound = checkForDangerousProps();
-        boolean testkeyFound = checkForTestKeys();
-        boolean devKeyFound = checkForDevKeys();
-
-        // external monitoring
-        /*boolean usbDebuggingEnabled =*/ checkRootMethodUSBDebug();
-
-        //emulator check
-        boolean checkForEmulator = checkForEmulator();
-
-        //native check
-        boolean checkNative = rootcheckNative();
-
-
-        return testkeyFound || suPathFound || suBinaryFound || rootManagementAppFound || dangerousAppsFound || rootCloakingAppFound || magiskFound || busyboxFound || rwPathsFound
-                || dangerousPropertiesFound || devKeyFound || checkForEmulator || checkNative;
+        this(c, RootCheckRegistry.createDefault());
     }
 
     /**
-     * Checks if there are test-keys
-     * @return - true if test-keys are found
+     * @param c - the context used for the package and settings checks
+     * @param executor - the executor the checks run on, it should allow several checks to run at the same time
      */
-    private boolean checkForTestKeys() {
-        String buildTags = Build.TAGS;
-        if ( buildTags != null && buildTags.contains("test-keys")){
-            Log.i("checkForTestKeys", "Test keys found = True");
-            reasons.add("Test keys found");
-            return true ;
-        } else {
-
-            Log.i("checkForTestKeys", "Test keys found =False");
-            return false;
-        }
+    public RootChecker(Context c, ExecutorService executor) {
+        this(c, RootCheckRegistry.createDefault(), executor);
     }
 
     /**
-     * Checks if there are test-keys
-     * @return - true if test-keys are found
+     * @param c - the context used for the package and settings checks
+     * @param registry - the checks that are run
      */
-    private boolean checkForDevKeys() {
-        String buildTags = Build.TAGS;
-        if ( buildTags != null && buildTags.contains("dev-keys")){
-            Log.i("checkForDevKeys", "Dev keys found = True");
-            reasons.add("Dev keys found");
-            return true ;
-        } else {
-
-            Log.i("checkForDevKeys", "Dev keys found =False");
-            return false;
-        }
+    public RootChecker(Context c, RootCheckRegistry registry) {
+        this(c, registry, CheckEngine.getDefaultExecutor());
     }
 
     /**
-     * Checks if there is a path SU
-     * @return - true if a path with SU is found
+     * @param c - the context used for the package and settings checks
+     * @param registry - the checks that are run
+     * @param executor - the executor the checks run on, it should allow several checks to run at the same time
      */
-    private boolean checkForSUPath() {
-        boolean check = false ;
-        for(String pathDir : System.getenv("PATH").split(":")){
-            if(new File(pathDir, "su").exists()) {
-                check =  true;
-            }
-        }
-        if(check){
-            reasons.add("Path SU found");
-            Log.i("checkforSUPath", "SU path found = True");
-            checkRootMethod2A();
-            return true;
-        }
-        Log.i("checkforSUPath", "False");
-        return false;
+    public RootChecker(Context c, RootCheckRegistry registry, ExecutorService executor) {
+        this(new AndroidDeviceEnvironment(c), registry, executor);
     }
 
     /**
-     * if there are SU paths check the UID, this might trigger authorization from a root management app
+     * @param environment - the device the checks read from, a fake environment lets the checks run on the JVM
+     * @param registry - the checks that are run
+     * @param executor - the executor the checks run on, it should allow several checks to run at the same time
      */
-    private void checkRootMethod2A(){
-        Process process = null;
-        try {
-            process = new ProcessBuilder().command("su", "-c", "id").start();
-            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String output = in.readLine();
-            if (output != null && output.toLowerCase().contains("uid=0"))
-                reasons.add("Root access is available");
-            Log.i("Root access", "isRootGiven= True");
-
-
-        } catch (Exception e) {
-            Log.e("Root access", e.toString());
-
-        } finally {
-            if (process != null)
-                try {
-                    process.destroy();
-                } catch (Exception e){
-                    Log.e("Root access", e.toString());
-                }
-        }
+    public RootChecker(DeviceEnvironment environment, RootCheckRegistry registry, ExecutorService executor) {
+        this.environment = environment;
+        this.registry = registry;
+        this.engine = new CheckEngine(executor);
+        this.result = RootCheckResult.EMPTY;
     }
 
     /**
-     * Checks if the usb debugging is enabled
-     * @return - true if debugging is enabled
+     * @return - the reasons of the last scan
      */
-    private boolean checkRootMethodUSBDebug(){
-        //Tested
-        //If it is enabled, adb == 1, otherwise adb == 0
-        int adb = Settings.Secure.getInt(c.getContentResolver(), Settings.Secure.ADB_ENABLED, 0);
-        if (adb == 1 ) {
-            Log.i("USB debugging", "USB debugging = True");
-            reasons.add("USB debugging enabled");
-            return true;
-        } else {
-            Log.i("USB debugging", "USB debugging = False");
-            return false;
-        }
+    public List<String> getReasons() {
+        return result.getReasons();
     }
 
     /**
-     * Using the PackageManager, check for a list of well known root apps. @link {Const.knownRootAppsPackages}
-     * @return true if one of the apps it's installed
+     * @return - the findings and the categories of the last scan
      */
-    private boolean detectRootManagementApps() {
-        // Create a list of package names to iterate over from constants
-        ArrayList<String> packages = new ArrayList<>(Arrays.asList(Const.knownRootAppsPackages));
-
-        if (isAnyPackageFromListInstalled(packages)) {
-            Log.i("Root management apps", "True");
-            return true ;
-        }
-        Log.i("Root management apps", "False");
-        return false;
+    public RootCheckResult getResult() {
+        return result;
     }
 
     /**
-     * Using the PackageManager, check for a list of well known root apps. @link {Const.knownDangerousAppsPackages}
-     * @return true if one of the apps it's installed
+     * Serves fresh results from the given cache instead of running the checks again,
+     * {@link CheckResultCache#getInstance(Context)} is shared by all root checkers in the process
+     * @param cache - the cache to use or null to always run the checks
+     * @return - this root checker
      */
-    private boolean detectPotentiallyDangerousApps() {
-        ArrayList<String> packages = new ArrayList<>(Arrays.asList(Const.knownDangerousAppsPackages));
-        if (isAnyPackageFromListInstalled(packages)) {
-            Log.i("Dangerous apps", "True");
-            return true ;
-        }
-        Log.i("Dangerous apps", "False");
-        return false;
+    public RootChecker setCache(CheckResultCache cache) {
+        this.cache = cache;
+        return this;
     }
 
     /**
-     * Using the PackageManager, check for a list of well known root apps. @link {Const.knownRootCloakingPackages}
-     * @return true if one of the apps it's installed
+     * In an incremental scan a {@link FingerprintedCheck} only runs when its inputs changed since the last scan of this
+     * root checker, like the mounts, the installed packages or the directories of the su binaries.
+     * Otherwise its previous result is reused, so most re-scans only stat a few directories.
+     * @param incremental - true to reuse the results of unchanged checks, false to forget them and run every check
+     * @return - this root checker
      */
-    private boolean detectRootCloakingApps() {
-        ArrayList<String> packages = new ArrayList<>(Arrays.asList(Const.knownRootCloakingPackages));
-        if (isAnyPackageFromListInstalled(packages)) {
-            Log.i("RootCloaking apps", "True");
-            return true ;
+    public RootChecker setIncremental(boolean incremental) {
+        if (!incremental) {
+            fingerprints = null;
+        } else if (fingerprints == null) {
+            fingerprints = new FingerprintStore();
         }
-        Log.i("RootCloaking apps", "False");
-        return false;
+        return this;
     }
 
     /**
-     * Checks various (Const.suPaths) common locations for the SU binary
-     * @return true if SU binary has been found
+     * Reports the duration and the outcome of every check, for example to a {@link CheckCounters},
+     * a {@link LatencyHistogram} or a {@link TraceCheckListener}
+     * @param listener - called on the thread that runs the check
+     * @return - this root checker
      */
-    private boolean checkForSuBinary(){
-        return checkForBinary("su");
+    public RootChecker addCheckListener(CheckListener listener) {
+        engine.addCheckListener(listener);
+        return this;
     }
 
-    /**
-     * Checks various (Const.suPaths) common locations for the magisk binary (a well know root level program)
-     * @return true if magisk has been found
-     */
-    private boolean checkForMagiskBinary(){
-        return checkForBinary("magisk");
+    public void removeCheckListener(CheckListener listener) {
+        engine.removeCheckListener(listener);
     }
 
     /**
-     * Checks various (Const.suPaths) common locations for the busybox binary (a well know root level program)
-     * @return true if busybox has been found
+     * @return - the device the checks read from
      */
-    private boolean checkForBusyBoxBinary(){
-        return checkForBinary("busybox");
+    public DeviceEnvironment getEnvironment() {
+        return environment;
     }
 
     /**
-     * Checks the binaries with the given parameter
-     * @param filename the name of the file that needs to be checked
-     * @return true if a binary with that filename has been found
+     * @return - the checks this root checker runs, checks can be added or removed
      */
-    private boolean checkForBinary(String filename) {
-
-        String[] pathsArray = Const.suPaths;
-
-        boolean result = false;
-
-        for (String path : pathsArray) {
-            String completePath = path + filename;
-            File f = new File(path, filename);
-            boolean fileExists = f.exists();
-            if (fileExists) {
-                reasons.add(completePath + " binary detected");
-
-                result = true;
-            }
-        }
-        Log.i("checkForBinary",filename + " = " + String.valueOf(result));
-        return result;
+    public RootCheckRegistry getRegistry() {
+        return registry;
     }
 
     /**
-     * Gets the mounts of the device
-     * @return - The different mounts of the device
+     * Runs all checks and blocks until they are finished, this should not be called from the main thread.
+     * @return - true if the device seems to be rooted
      */
-    private String[] mountReader() {
-        String[] result = new String[0];
-        try {
-            InputStream inputstream = Runtime.getRuntime().exec("mount").getInputStream();
-            String propVal = new Scanner(inputstream).useDelimiter("\\A").next();
-            result = propVal.split("\n");
-        } catch (IOException | NoSuchElementException e) {
-            e.printStackTrace();
-        }
-        return result;
+    public boolean isDeviceRooted() {
+        return isDeviceRooted(ScanMode.FULL_REPORT);
     }
 
     /**
-     * Gets the properties of the device
-     * @return - the different properties of the device
+     * Runs the checks and blocks until they are finished, this should not be called from the main thread.
+     * @param mode - {@link ScanMode#FAIL_FAST} to stop at the first check that detects root
+     * @return - true if the device seems to be rooted
      */
-    private String[] propsReader() {
-        String[] result = new String[0];
-        try {
-            InputStream inputstream = Runtime.getRuntime().exec("getprop").getInputStream();
-            String propVal = new Scanner(inputstream).useDelimiter("\\A").next();
-            result = propVal.split("\n");
-        } catch (IOException | NoSuchElementException e) {
-            e.printStackTrace();
-        }
-        return result;
+    public boolean isDeviceRooted(ScanMode mode) {
+        result = engine.runAll(registry.getChecks(), mode, new CheckContext(environment), cache, fingerprints);
+        return result.isRooted();
     }
 
     /**
-     * Checks for several system properties for
-     * @return - true if dangerous props are found
+     * Runs all checks in the background and delivers the result on the main thread.
+     * @param callback - receives the result on the main thread
+     * @return - a task that can be used to cancel the check
      */
-    private boolean checkForDangerousProps() {
-
-        final Map<String, String> dangerousProps = new HashMap<>();
-        dangerousProps.put("ro.debuggable", "1");
-        dangerousProps.put("ro.secure", "0");
-
-        boolean result = false;
-
-        String[] lines = propsReader();
-        for (String line : lines) {
-            for (String key : dangerousProps.keySet()) {
-                if (line.contains(key)) {
-                    String badValue = dangerousProps.get(key);
-                    badValue = "[" + badValue + "]";
-                    if (line.contains(badValue)) {
-                        //logging and adding to reasons
-                        Log.i("checkForDangerousProps",key + " = " + badValue + " detected!");
-                        reasons.add("Dangerous Property detected: " + key + " = " + badValue );
-                        result = true;
-                    } else {
-                        Log.i("checkForDangerousProps",key + " = " + badValue + " not detected");
-
-                    }
-                }
-            }
-        }
-        return result;
+    public RootCheckTask isDeviceRootedAsync(RootCheckCallback callback) {
+        return isDeviceRootedAsync(ScanMode.FULL_REPORT, MainThreadExecutor.get(), callback);
     }
 
     /**
-     * Checks the RW paths that you should not be able to write
-     * @return - true if RW paths have been found
+     * Runs all checks in the background without blocking the calling thread.
+     * @param callbackExecutor - the executor the callback is delivered on
+     * @param callback - receives the result
+     * @return - a task that can be used to cancel the check
      */
-    private boolean checkForRWPaths() {
-
-        boolean result = false;
-
-        String[] lines = mountReader();
-        for (String line : lines) {
-
-            // Split lines into parts
-            String[] args = line.split(" ");
-
-            if (args.length < 4){
-                // If we don't have enough options per line, skip this and log an error
-                Log.e("checkForRWPaths","Error formatting mount line: "+line);
-                continue;
-            }
-
-            String mountPoint = args[1];
-            String mountOptions = args[3];
-
-            for(String pathToCheck: Const.pathsThatShouldNotBeWrtiable) {
-                if (mountPoint.equalsIgnoreCase(pathToCheck)) {
-
-                    // Split options out and compare against "rw" to avoid false positives
-                    for (String option : mountOptions.split(",")){
-
-                        if (option.equalsIgnoreCase("rw")){
-                            Log.i("checkForRWPaths",pathToCheck+" path is mounted with rw permissions! "+line);
-                            reasons.add("Following RW path was detected: " + pathToCheck);
-                            result = true;
-                            break;
-                        }
-                    }
-                }
-            }
-        }
-
-        return result;
+    public RootCheckTask isDeviceRootedAsync(Executor callbackExecutor, RootCheckCallback callback) {
+        return isDeviceRootedAsync(ScanMode.FULL_REPORT, callbackExecutor, callback);
     }
 
     /**
-     * Check if any package in the list is installed
-     * @param packages - list of packages to search for
-     * @return true if any of the packages are installed
+     * Runs the checks in the background without blocking the calling thread.
+     * @param mode - {@link ScanMode#FAIL_FAST} to stop at the first check that detects root
+     * @param callbackExecutor - the executor the callback is delivered on
+     * @param callback - receives the result
+     * @return - a task that can be used to cancel the check
      */
-    private boolean isAnyPackageFromListInstalled(List<String> packages){
-        boolean result = false;
-
-        PackageManager pm = c.getPackageManager();
-
-        for (String packageName : packages) {
-            try {
-                // Root app detected
-                pm.getPackageInfo(packageName, 0);
-                Log.i("PackageChecker",packageName + " ROOT app detected!");
-                reasons.add("Root app detected: " + packageName);
-                result = true;
-            } catch (PackageManager.NameNotFoundException e) {
-                // Exception thrown, package is not installed into the system
+    public RootCheckTask isDeviceRootedAsync(ScanMode mode, final Executor callbackExecutor, final RootCheckCallback callback) {
+        final RootCheckTask task = new RootCheckTask();
+        task.setScan(engine.start(registry.getChecks(), mode, new CheckContext(environment), cache, fingerprints, new CheckEngine.Listener() {
+            @Override
+            public void onScanComplete(final RootCheckResult scanResult) {
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (task.markDone()) {
+                            result = scanResult;
+                            callback.onResult(scanResult);
+                        }
+                    }
+                });
             }
-        }
-
-        return result;
+        }));
+        return task;
     }
 
     /**
-     * Check if the device is an emulator
-     * @return true if the device is an emulator
+     * Only runs the native su binary check
+     * @return - true if the native check found a su binary
      */
-    private boolean checkForEmulator(){
-        boolean emulated = false ;
-
-        // The name of the underlying board for emulators its "unknown".
-        if(Build.BOARD.contains("unknown")) {
-            emulated = true ;
-            Log.i("checkForEmulator Board" , Build.BOARD + " = true");
-            reasons.add("Emulator detected: Unknown board");
-        }
-
-        // sometimes there is no bootloader so there is a false positive
-        /*// The bootloader, for emulators its "unknown".
-        if(Build.BOOTLOADER.contains("unknown")) {
-            emulated = true ;
-            reasons.add("Emulator detected: no bootloader");
-        }*/
-
-        // The name of device, for emulators its generic_x86
-        if(Build.DEVICE.contains("generic")) {
-            emulated = true ;
-            Log.i("checkForEmulator Board" , Build.DEVICE + " = true");
-            reasons.add("Emulator detected: device contains generic");
-        }
-
-        // The name of the hardware  "goldfish" or newer like "ranchu"
-        if(Build.HARDWARE.contains("goldfish") || Build.HARDWARE.contains("ranchu")) {
-            emulated = true ;
-            Log.i("checkForEmulator Board" , Build.HARDWARE + " = true");
-            reasons.add("Emulator detected: Hardware contained goldfish or ranchu");
-        }
-
-        // The end-user-visible name for the end product. "SDK"
-        if(Build.MODEL.toUpperCase().contains("SDK") || Build.MODEL.toUpperCase().contains("GENERIC") ) {
-            emulated = true ;
-            Log.i("checkForEmulator Board" , Build.MODEL + " = true");
-            reasons.add("Emulator detected: Build Model contains SDK or generic");
-        }
-
-        // The name of the overall product. for emulators it contains sdk_gphone_x86
-        if(Build.PRODUCT.contains("sdk")){
-            emulated = true ;
-            Log.i("checkForEmulator Board" , Build.PRODUCT + " = true");
-            reasons.add("Emulator detected: product name contained SDK ");
-        }
-
-        return emulated;
-    }
-
     public boolean rootcheckNative(){
-        String binaryName = "su";
-        Map values = new HashMap();
-        String[] paths = new String[Const.suPaths.length];
-        for (int i = 0; i < paths.length; i++) {
-            paths[i] = Const.suPaths[i]+binaryName;
-            values.put(i,paths[i]);
-        }
-
-        boolean binaryFound = false ;
-        for(int i : checkForRootNative(paths)){
-            if(i == 1 ){
-                binaryFound = true;
-                reasons.add("Native found binary: " + values.get(i));
-            }
-        }
-
-        return binaryFound ;
-    }
-
-
-    static {
-        System.loadLibrary("native-lib");
+        CheckResult nativeResult = new NativeBinaryCheck().run(new CheckContext(environment));
+        List<Finding> findings = new ArrayList<>(result.getFindings());
+        findings.addAll(nativeResult.getFindings());
+        result = new RootCheckResult(result.isRooted() || nativeResult.isDetected(), findings);
+        return nativeResult.isDetected();
     }
-
-    private native int[] checkForRootNative(String[] paths);
 }
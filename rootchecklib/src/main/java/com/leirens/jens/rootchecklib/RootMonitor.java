@@ -0,0 +1,342 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps scanning in the background and tells its subscribers when the result changes,
+ * so tools that are installed after the app started are still noticed.
+ * The interval doubles after every scan that did not change the result, up to the max interval,
+ * and drops back to the min interval when the result changed or something relevant happened,
+ * like an installed or removed package or a change of the mounts.
+ * The scans are incremental, see {@link RootChecker#setIncremental(boolean)}, so a scan of an unchanged device
+ * only computes fingerprints.
+ */
+public class RootMonitor {
+
+    private static final String TAG = "RootMonitor";
+
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // package installs come in bursts, the scan waits a moment for the burst to settle
+    private static final long EVENT_DELAY_MILLIS = 1000;
+
+    private static MonitorScheduler defaultScheduler;
+
+    private final RootChecker rootChecker;
+    private final MonitorScheduler scheduler;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final PackageChangeMonitor.Listener packageListener = new PackageChangeMonitor.Listener() {
+        @Override
+        public void onPackageChanged(String packageName, boolean installed) {
+            onEnvironmentChanged();
+        }
+    };
+
+    private final Executor directExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private long minIntervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+    private long maxIntervalMillis = DEFAULT_MAX_INTERVAL_MILLIS;
+    private long intervalMillis = DEFAULT_MIN_INTERVAL_MILLIS;
+    private boolean running;
+    private Context context;
+    private Future<?> nextScan;
+    private Future<?> nextMountsCheck;
+    private RootCheckTask runningScan;
+    private boolean rescanRequested;
+    private long mountsFingerprint = FingerprintedCheck.NO_FINGERPRINT;
+    private volatile RootCheckResult lastResult;
+
+    public RootMonitor(RootChecker rootChecker) {
+        this(rootChecker, getDefaultScheduler());
+    }
+
+    /**
+     * @param rootChecker - runs the scans, it is switched to incremental scans
+     * @param scheduler - schedules the scans
+     */
+    public RootMonitor(RootChecker rootChecker, MonitorScheduler scheduler) {
+        this.rootChecker = rootChecker.setIncremental(true);
+        this.scheduler = scheduler;
+    }
+
+    private static synchronized MonitorScheduler getDefaultScheduler() {
+        if (defaultScheduler == null) {
+            final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-monitor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            defaultScheduler = new MonitorScheduler() {
+                @Override
+                public Future<?> schedule(Runnable task, long delayMillis) {
+                    return executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+                }
+            };
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * @param minIntervalMillis - the interval after a change, also how often the mounts are compared
+     * @param maxIntervalMillis - the longest interval while the result stays the same
+     * @return - this monitor
+     */
+    public synchronized RootMonitor setIntervals(long minIntervalMillis, long maxIntervalMillis) {
+        if (minIntervalMillis <= 0 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("0 < minIntervalMillis <= maxIntervalMillis");
+        }
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        intervalMillis = minIntervalMillis;
+        return this;
+    }
+
+    /**
+     * @param subscriber - is told about the first result and every change on the main thread,
+     *                   and right away about the last result
+     * @return - this monitor
+     */
+    public RootMonitor subscribe(Subscriber subscriber) {
+        return subscribe(MainThreadExecutor.get(), subscriber);
+    }
+
+    /**
+     * @param executor - the executor the subscriber is called on
+     * @param subscriber - is told about the first result and every change, and right away about the last result
+     * @return - this monitor
+     */
+    public RootMonitor subscribe(Executor executor, Subscriber subscriber) {
+        Subscription subscription = new Subscription(executor, subscriber);
+        subscriptions.add(subscription);
+        RootCheckResult result = lastResult;
+        if (result != null) {
+            subscription.deliver(result);
+        }
+        return this;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.subscriber == subscriber) {
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Starts scanning right away, package changes are not noticed until the next scan
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        intervalMillis = minIntervalMillis;
+        scheduleScan(0);
+        scheduleMountsCheck();
+    }
+
+    /**
+     * Starts scanning right away and scans again soon after a package is installed or removed
+     * @param context - any context, the application context is used to listen for package changes
+     */
+    public synchronized void start(Context context) {
+        if (running) {
+            return;
+        }
+        this.context = context;
+        PackageChangeMonitor.get(context).addListener(packageListener);
+        start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (context != null) {
+            PackageChangeMonitor.get(context).removeListener(packageListener);
+            context = null;
+        }
+        cancel(nextScan);
+        cancel(nextMountsCheck);
+        nextScan = null;
+        nextMountsCheck = null;
+        if (runningScan != null) {
+            runningScan.cancel();
+            runningScan = null;
+        }
+        rescanRequested = false;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Tightens the interval and scans again soon, for example when the app knows that something relevant changed
+     */
+    public synchronized void onEnvironmentChanged() {
+        if (!running) {
+            return;
+        }
+        intervalMillis = minIntervalMillis;
+        if (runningScan != null) {
+            // the running scan may have missed the change
+            rescanRequested = true;
+            return;
+        }
+        scheduleScan(EVENT_DELAY_MILLIS);
+    }
+
+    /**
+     * @return - the result of the last scan, null before the first scan finished
+     */
+    public RootCheckResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * @return - the time until the next scan when the result stays the same
+     */
+    public synchronized long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    private void scheduleScan(long delayMillis) {
+        cancel(nextScan);
+        nextScan = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                scan();
+            }
+        }, delayMillis);
+    }
+
+    private synchronized void scan() {
+        if (!running || runningScan != null) {
+            return;
+        }
+        nextScan = null;
+        RootCheckTask task = rootChecker.isDeviceRootedAsync(ScanMode.FULL_REPORT, directExecutor, new RootCheckCallback() {
+            @Override
+            public void onResult(RootCheckResult result) {
+                onScanComplete(result);
+            }
+        });
+        // a scan that was served from the cache completed already
+        if (!task.isDone()) {
+            runningScan = task;
+        }
+    }
+
+    private void onScanComplete(RootCheckResult result) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            runningScan = null;
+            RootCheckResult previous = lastResult;
+            boolean changed = previous == null || previous.isRooted() != result.isRooted()
+                    || !previous.getReasons().equals(result.getReasons());
+            lastResult = result;
+            if (changed) {
+                intervalMillis = minIntervalMillis;
+            } else {
+                intervalMillis = Math.min(maxIntervalMillis, intervalMillis * 2);
+            }
+            if (rescanRequested) {
+                rescanRequested = false;
+                scheduleScan(EVENT_DELAY_MILLIS);
+            } else {
+                scheduleScan(changed ? minIntervalMillis : intervalMillis);
+            }
+            if (!changed) {
+                return;
+            }
+        }
+        RootCheckLog.i(TAG, "Result changed, rooted = " + result.isRooted());
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(result);
+        }
+    }
+
+    /**
+     * There is no broadcast for new mounts, so the mounts file is hashed at the min interval,
+     * which is a single read without parsing
+     */
+    private void scheduleMountsCheck() {
+        nextMountsCheck = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkMounts();
+            }
+        }, minIntervalMillis);
+    }
+
+    private void checkMounts() {
+        long fingerprint = new CheckContext(rootChecker.getEnvironment()).getMountsFingerprint();
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            if (mountsFingerprint != FingerprintedCheck.NO_FINGERPRINT && fingerprint != mountsFingerprint) {
+                onEnvironmentChanged();
+            }
+            mountsFingerprint = fingerprint;
+            scheduleMountsCheck();
+        }
+    }
+
+    private static void cancel(Future<?> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    public interface Subscriber {
+
+        /**
+         * @param result - the new result, the first result after subscribing is always delivered
+         */
+        void onRootStatusChanged(RootCheckResult result);
+    }
+
+    private static final class Subscription {
+
+        private final Executor executor;
+        private final Subscriber subscriber;
+
+        private Subscription(Executor executor, Subscriber subscriber) {
+            this.executor = executor;
+            this.subscriber = subscriber;
+        }
+
+        private void deliver(final RootCheckResult result) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    subscriber.onRootStatusChanged(result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+/**
+ * Sends an attestation request to the SafetyNet service.
+ * {@link PlayServicesAttestationClient} uses Google Play services, a stand-in lets the pipeline run without them.
+ */
+public interface AttestationClient {
+
+    /**
+     * Starts an attestation, the callback is called exactly once on any thread
+     * @param nonce - the nonce that is signed into the result
+     * @param apiKey - the api key from google to call the SafetyNet service
+     * @param callback - receives the JWS result or the error
+     */
+    void attest(byte[] nonce, String apiKey, Callback callback);
+
+    interface Callback {
+
+        /**
+         * @param jwsResult - the signed attestation result
+         */
+        void onSuccess(String jwsResult);
+
+        /**
+         * @param e - why the attestation failed, an ApiException for errors of the service
+         */
+        void onFailure(Exception e);
+    }
+}
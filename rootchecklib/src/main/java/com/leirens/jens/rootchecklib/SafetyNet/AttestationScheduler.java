@@ -0,0 +1,490 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import android.content.Context;
+
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Sits in front of an {@link AttestationClient} and protects the daily quota of the api key.
+ * A request is only sent when
+ * <ul>
+ * <li>the token bucket has a token, the bucket holds a small burst and refills at a steady rate</li>
+ * <li>the daily quota is not used up</li>
+ * <li>the backoff after a transient error, like a network error or a time out, has passed,
+ * the backoff doubles with every failure in a row and has a random jitter</li>
+ * <li>the circuit breaker is closed, it opens after too many failures in a row and lets a single request through
+ * once it has been open for a while</li>
+ * </ul>
+ * Otherwise the callback gets an {@link AttestationThrottledException} right away, so retrying blindly costs nothing.
+ * The limits only work when every request of the api key goes through the same scheduler,
+ * {@link #forApiKey(Context, String)} hands out one scheduler per api key for the whole process
+ * and keeps the used quota of the day in a file, so a restart of the app does not reset it.
+ */
+public class AttestationScheduler implements AttestationClient {
+
+    private static final String TAG = "AttestationScheduler";
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final Map<String, AttestationScheduler> SCHEDULERS = new HashMap<>();
+    private static ExecutorService quotaWriter;
+
+    public enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * The time source of the scheduler, a fake clock makes it testable
+     */
+    public interface Clock {
+
+        long currentTimeMillis();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final AttestationClient delegate;
+    private final Clock clock;
+    private final Random random = new Random();
+
+    private int burst = 5;
+    private long refillIntervalMillis = 60 * 1000L;
+    private int dailyQuota = 10000;
+    private long backoffBaseMillis = 1000L;
+    private long backoffMaxMillis = 5 * 60 * 1000L;
+    private int failureThreshold = 5;
+    private long openMillis = 10 * 60 * 1000L;
+
+    // the token bucket
+    private double tokens = burst;
+    private long lastRefill;
+    // the requests sent on the current utc day
+    private long quotaDay = -1;
+    private int usedToday;
+    // the backoff and the circuit breaker
+    private int consecutiveFailures;
+    private long nextAttemptAt;
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    // keeps usedToday across restarts, null to keep it in memory only
+    private File quotaFile;
+    private boolean quotaWritePending;
+
+    private long sentCount;
+    private long throttledCount;
+    private long failureCount;
+
+    /**
+     * @param delegate - sends the requests that are let through
+     */
+    public AttestationScheduler(AttestationClient delegate) {
+        this(delegate, SYSTEM_CLOCK);
+    }
+
+    /**
+     * @param delegate - sends the requests that are let through
+     * @param clock - the time source
+     */
+    public AttestationScheduler(AttestationClient delegate, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.lastRefill = clock.currentTimeMillis();
+    }
+
+    /**
+     * @param context - any context, used for the Google Play services client and the files directory
+     * @param apiKey - your api key from google to call the SafetyNet service
+     * @return - the scheduler of the api key, in front of the Google Play services client, with the default limits
+     * and the used quota in the files directory of the app. The first call reads that file.
+     */
+    public static synchronized AttestationScheduler forApiKey(Context context, String apiKey) {
+        String key = String.valueOf(apiKey);
+        AttestationScheduler scheduler = SCHEDULERS.get(key);
+        if (scheduler == null) {
+            // the api key is not written to disk, only its hash is part of the file name
+            File quotaFile = new File(context.getFilesDir(),
+                    "safetynet_quota_" + Integer.toHexString(key.hashCode()) + ".bin");
+            scheduler = new AttestationScheduler(new PlayServicesAttestationClient(context)).setQuotaFile(quotaFile);
+            SCHEDULERS.put(key, scheduler);
+        }
+        return scheduler;
+    }
+
+    private static synchronized ExecutorService getQuotaWriter() {
+        if (quotaWriter == null) {
+            quotaWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-quota");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return quotaWriter;
+    }
+
+    /**
+     * Reads the quota that was used today from the file, after that every request that is sent is written to it
+     * in the background
+     * @param quotaFile - the file that keeps the used quota of the day, null to keep it in memory only
+     * @return - this scheduler
+     */
+    public synchronized AttestationScheduler setQuotaFile(File quotaFile) {
+        this.quotaFile = quotaFile;
+        if (quotaFile != null && quotaFile.exists()) {
+            readQuota(quotaFile);
+        }
+        return this;
+    }
+
+    private void readQuota(File file) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                long day = in.readLong();
+                int used = in.readInt();
+                if (day > quotaDay) {
+                    quotaDay = day;
+                    usedToday = used;
+                } else if (day == quotaDay) {
+                    usedToday = Math.max(usedToday, used);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            RootCheckLog.e(TAG, "Could not read the used quota: " + e);
+        }
+    }
+
+    private void scheduleQuotaWrite() {
+        if (quotaFile == null || quotaWritePending) {
+            return;
+        }
+        quotaWritePending = true;
+        getQuotaWriter().execute(new Runnable() {
+            @Override
+            public void run() {
+                writeQuota();
+            }
+        });
+    }
+
+    /**
+     * Writes the latest count, the requests that were sent while the write was pending are written at once
+     */
+    private void writeQuota() {
+        File file;
+        long day;
+        int used;
+        synchronized (this) {
+            quotaWritePending = false;
+            file = quotaFile;
+            day = quotaDay;
+            used = usedToday;
+        }
+        if (file == null) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeLong(day);
+                out.writeInt(used);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Could not rename " + temp);
+            }
+        } catch (IOException e) {
+            RootCheckLog.e(TAG, "Could not store the used quota: " + e);
+            temp.delete();
+        }
+    }
+
+    /**
+     * @param burst - how many requests can be sent right after each other, 5 by default
+     * @param refillIntervalMillis - the bucket gets a token back every interval, 1 minute by default
+     * @return - this scheduler
+     */
+    public synchronized AttestationScheduler setRateLimit(int burst, long refillIntervalMillis) {
+        if (burst < 1 || refillIntervalMillis <= 0) {
+            throw new IllegalArgumentException("burst must be at least 1 and refillIntervalMillis positive");
+        }
+        refill(clock.currentTimeMillis());
+        this.burst = burst;
+        this.refillIntervalMillis = refillIntervalMillis;
+        tokens = Math.min(tokens, burst);
+        return this;
+    }
+
+    /**
+     * @param dailyQuota - the requests the api key may send per utc day, 10000 by default
+     * @return - this scheduler
+     */
+    public synchronized AttestationScheduler setDailyQuota(int dailyQuota) {
+        if (dailyQuota < 0) {
+            throw new IllegalArgumentException("dailyQuota must not be negative");
+        }
+        this.dailyQuota = dailyQuota;
+        return this;
+    }
+
+    /**
+     * @param baseMillis - the backoff after the first transient error, 1 second by default
+     * @param maxMillis - the longest backoff, 5 minutes by default
+     * @return - this scheduler
+     */
+    public synchronized AttestationScheduler setBackoff(long baseMillis, long maxMillis) {
+        if (baseMillis <= 0 || maxMillis < baseMillis) {
+            throw new IllegalArgumentException("baseMillis must be positive and at most maxMillis");
+        }
+        this.backoffBaseMillis = baseMillis;
+        this.backoffMaxMillis = maxMillis;
+        return this;
+    }
+
+    /**
+     * @param failureThreshold - the failures in a row that open the circuit, 5 by default
+     * @param openMillis - how long the circuit stays open before it lets a request through, 10 minutes by default
+     * @return - this scheduler
+     */
+    public synchronized AttestationScheduler setCircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis <= 0) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1 and openMillis positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        return this;
+    }
+
+    @Override
+    public void attest(byte[] nonce, String apiKey, final Callback callback) {
+        AttestationThrottledException throttled;
+        synchronized (this) {
+            throttled = acquire(clock.currentTimeMillis());
+        }
+        if (throttled != null) {
+            callback.onFailure(throttled);
+            return;
+        }
+
+        try {
+            delegate.attest(nonce, apiKey, new Callback() {
+                @Override
+                public void onSuccess(String jwsResult) {
+                    onSent(null);
+                    callback.onSuccess(jwsResult);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    onSent(e);
+                    callback.onFailure(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            onSent(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a token and a unit of the quota if the request may be sent
+     * @return - null if the request may be sent, the reason why not otherwise
+     */
+    private AttestationThrottledException acquire(long now) {
+        AttestationThrottledException throttled = check(now);
+        if (throttled != null) {
+            throttledCount++;
+            return throttled;
+        }
+        if (circuitState == CircuitState.HALF_OPEN) {
+            trialInFlight = true;
+        }
+        tokens -= 1;
+        usedToday++;
+        sentCount++;
+        scheduleQuotaWrite();
+        return null;
+    }
+
+    /**
+     * @return - null if a request may be sent now, the reason why not otherwise
+     */
+    private AttestationThrottledException check(long now) {
+        updateCircuit(now);
+        if (circuitState == CircuitState.OPEN) {
+            return new AttestationThrottledException(AttestationThrottledException.Reason.CIRCUIT_OPEN,
+                    openedAt + openMillis - now);
+        }
+        if (circuitState == CircuitState.HALF_OPEN && trialInFlight) {
+            return new AttestationThrottledException(AttestationThrottledException.Reason.CIRCUIT_OPEN,
+                    backoffBaseMillis);
+        }
+        if (now < nextAttemptAt) {
+            return new AttestationThrottledException(AttestationThrottledException.Reason.BACKOFF,
+                    nextAttemptAt - now);
+        }
+        updateQuotaDay(now);
+        if (usedToday >= dailyQuota) {
+            return new AttestationThrottledException(AttestationThrottledException.Reason.DAILY_QUOTA,
+                    (quotaDay + 1) * DAY_MILLIS - now);
+        }
+        refill(now);
+        if (tokens < 1) {
+            return new AttestationThrottledException(AttestationThrottledException.Reason.RATE_LIMITED,
+                    (long) Math.ceil((1 - tokens) * refillIntervalMillis));
+        }
+        return null;
+    }
+
+    private synchronized void onSent(Exception error) {
+        long now = clock.currentTimeMillis();
+        trialInFlight = false;
+        if (error == null) {
+            consecutiveFailures = 0;
+            nextAttemptAt = 0;
+            circuitState = CircuitState.CLOSED;
+            return;
+        }
+
+        failureCount++;
+        consecutiveFailures++;
+        if (isTransient(error)) {
+            // equal jitter, half of the backoff is fixed so it keeps growing, the other half is random
+            long backoff = backoffBaseMillis << Math.min(consecutiveFailures - 1, 30);
+            if (backoff <= 0 || backoff > backoffMaxMillis) {
+                backoff = backoffMaxMillis;
+            }
+            long half = backoff / 2;
+            nextAttemptAt = now + half + (long) (random.nextDouble() * (backoff - half));
+        }
+        if (circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            circuitState = CircuitState.OPEN;
+            openedAt = now;
+        }
+        RootCheckLog.w(TAG, "Attestation failed " + consecutiveFailures + " times in a row, circuit "
+                + circuitState + ": " + error);
+    }
+
+    /**
+     * @return - true if the same request may succeed later, like after a network error
+     */
+    private static boolean isTransient(Exception error) {
+        if (error instanceof ApiException) {
+            switch (((ApiException) error).getStatusCode()) {
+                case CommonStatusCodes.NETWORK_ERROR:
+                case CommonStatusCodes.INTERNAL_ERROR:
+                case CommonStatusCodes.INTERRUPTED:
+                case CommonStatusCodes.TIMEOUT:
+                case CommonStatusCodes.API_NOT_CONNECTED:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return error instanceof IOException;
+    }
+
+    private void updateCircuit(long now) {
+        if (circuitState == CircuitState.OPEN && now - openedAt >= openMillis) {
+            circuitState = CircuitState.HALF_OPEN;
+            trialInFlight = false;
+        }
+    }
+
+    private void updateQuotaDay(long now) {
+        long day = now / DAY_MILLIS;
+        if (day != quotaDay) {
+            quotaDay = day;
+            usedToday = 0;
+        }
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(burst, tokens + (double) (now - lastRefill) / refillIntervalMillis);
+        }
+        lastRefill = now;
+    }
+
+    /**
+     * @return - the requests that can still be sent today before the quota is used up
+     */
+    public synchronized int getRemainingDailyQuota() {
+        updateQuotaDay(clock.currentTimeMillis());
+        return Math.max(0, dailyQuota - usedToday);
+    }
+
+    /**
+     * @return - the requests that can be sent right after each other now, as far as the rate limit is concerned
+     */
+    public synchronized int getAvailableTokens() {
+        refill(clock.currentTimeMillis());
+        return (int) tokens;
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        updateCircuit(clock.currentTimeMillis());
+        return circuitState;
+    }
+
+    /**
+     * @return - how long until a request would be sent, 0 if it would be sent now
+     */
+    public synchronized long getRetryAfterMillis() {
+        AttestationThrottledException throttled = check(clock.currentTimeMillis());
+        return throttled != null ? throttled.getRetryAfterMillis() : 0;
+    }
+
+    /**
+     * @return - the requests that were sent to the client
+     */
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return - the requests that were not sent because of the rate limit, quota, backoff or circuit breaker
+     */
+    public synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+    /**
+     * @return - the requests that were sent and failed
+     */
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+}
@@ -0,0 +1,115 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle to one request for an attestation.
+ * Concurrent requests share a single attestation, cancelling a task only stops its own callback,
+ * the attestation goes on for the other requests.
+ */
+public class AttestationTask implements Future<SafetyNetResponse> {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int CANCELLED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final Executor callbackExecutor;
+    private final SafetyNetCallback callback;
+    private volatile SafetyNetResponse response;
+    private volatile Exception error;
+
+    AttestationTask(Executor callbackExecutor, SafetyNetCallback callback) {
+        this.callbackExecutor = callbackExecutor;
+        this.callback = callback;
+    }
+
+    /**
+     * Completes the task with the outcome of the shared attestation and calls the callback
+     * @param response - the parsed result, null if the attestation failed
+     * @param error - why the attestation failed, null if it succeeded
+     */
+    void complete(final SafetyNetResponse response, final Exception error) {
+        if (!state.compareAndSet(RUNNING, DONE)) {
+            return;
+        }
+        this.response = response;
+        this.error = error;
+        done.countDown();
+        if (callback == null) {
+            return;
+        }
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    callback.onError(error);
+                } else {
+                    callback.onResponse(response);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels this request, the callback will not be called
+     * @param mayInterruptIfRunning - ignored, the shared attestation is never interrupted
+     * @return - false if the result was already delivered or the task was already cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!state.compareAndSet(RUNNING, CANCELLED)) {
+            return false;
+        }
+        done.countDown();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != RUNNING;
+    }
+
+    /**
+     * Blocks until the attestation is done, never call this from the main thread
+     * @return - the parsed attestation result
+     * @throws ExecutionException - if the attestation failed, the cause is the error
+     */
+    @Override
+    public SafetyNetResponse get() throws InterruptedException, ExecutionException {
+        done.await();
+        return getResult();
+    }
+
+    @Override
+    public SafetyNetResponse get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("The attestation did not finish in time");
+        }
+        return getResult();
+    }
+
+    private SafetyNetResponse getResult() throws ExecutionException {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        if (error != null) {
+            throw new ExecutionException(error);
+        }
+        return response;
+    }
+}
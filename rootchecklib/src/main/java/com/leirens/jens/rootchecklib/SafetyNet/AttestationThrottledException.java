@@ -0,0 +1,51 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+/**
+ * Delivered instead of an attestation when the {@link AttestationScheduler} did not send the request,
+ * the quota was not used
+ */
+public class AttestationThrottledException extends Exception {
+
+    public enum Reason {
+
+        /**
+         * The token bucket is empty, too many requests in a short time
+         */
+        RATE_LIMITED,
+
+        /**
+         * The daily quota of the api key is used up
+         */
+        DAILY_QUOTA,
+
+        /**
+         * A recent request failed with a transient error, the next request waits for the backoff
+         */
+        BACKOFF,
+
+        /**
+         * Too many requests failed in a row, no requests are sent until the circuit breaker lets one through
+         */
+        CIRCUIT_OPEN
+    }
+
+    private final Reason reason;
+    private final long retryAfterMillis;
+
+    public AttestationThrottledException(Reason reason, long retryAfterMillis) {
+        super("Attestation not sent: " + reason + ", retry after " + retryAfterMillis + " ms");
+        this.reason = reason;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return - how long until a request can be sent again
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,530 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes the payload of a SafetyNet JWS into a {@link SafetyNetResponse}.
+ * The segments are found by index, the payload is base64url decoded into a buffer that is reused for every token
+ * and the JSON is parsed in a single pass that only keeps the fields of the response, unknown fields are skipped.
+ * The header is parsed the same way for the {@link JwsVerifier}.
+ * Uses no Android classes, so it also runs on a plain JVM.
+ * A decoder is not thread safe, use one per thread.
+ */
+public class JwsDecoder {
+
+    private static final byte[] ALG = ascii("alg");
+    private static final byte[] X5C = ascii("x5c");
+    private static final byte[] NONCE = ascii("nonce");
+    private static final byte[] TIMESTAMP_MS = ascii("timestampMs");
+    private static final byte[] APK_PACKAGE_NAME = ascii("apkPackageName");
+    private static final byte[] APK_CERTIFICATE_DIGEST_SHA256 = ascii("apkCertificateDigestSha256");
+    private static final byte[] APK_DIGEST_SHA256 = ascii("apkDigestSha256");
+    private static final byte[] CTS_PROFILE_MATCH = ascii("ctsProfileMatch");
+    private static final byte[] BASIC_INTEGRITY = ascii("basicIntegrity");
+    private static final byte[] ADVICE = ascii("advice");
+
+    // the value of every base64 and base64url character, -1 for the other characters
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; i++) {
+            BASE64_VALUES[i] = -1;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = i;
+        }
+        BASE64_VALUES['-'] = 62;
+        BASE64_VALUES['+'] = 62;
+        BASE64_VALUES['_'] = 63;
+        BASE64_VALUES['/'] = 63;
+    }
+
+    private byte[] buffer = new byte[2048];
+    private final StringBuilder chars = new StringBuilder(128);
+
+    // the state of the payload that is being parsed
+    private int position;
+    private int end;
+    private int keyStart;
+    private int keyEnd;
+
+    /**
+     * @param jws - the compact JWS, three base64url segments joined by dots
+     * @return - the fields of the payload
+     * @throws IOException - if the JWS or its payload is malformed
+     */
+    public SafetyNetResponse decode(String jws) throws IOException {
+        int firstDot = findFirstDot(jws);
+        decodeSegment(jws, firstDot + 1, jws.indexOf('.', firstDot + 1));
+        return parsePayload();
+    }
+
+    /**
+     * @param jws - the compact JWS
+     * @return - the fields of the header that are needed to verify the signature
+     * @throws IOException - if the JWS or its header is malformed
+     */
+    Header decodeHeader(String jws) throws IOException {
+        decodeSegment(jws, 0, findFirstDot(jws));
+        return parseHeader();
+    }
+
+    /**
+     * Checks that the JWS has three segments
+     * @return - the index of the dot after the header
+     */
+    private static int findFirstDot(String jws) throws IOException {
+        if (jws == null) {
+            throw new IOException("No JWS");
+        }
+        int firstDot = jws.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : jws.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || jws.indexOf('.', secondDot + 1) >= 0) {
+            throw new IOException("A JWS has three segments");
+        }
+        return firstDot;
+    }
+
+    private void decodeSegment(String jws, int start, int stop) throws IOException {
+        int maxLength = (stop - start) * 3 / 4 + 3;
+        if (buffer.length < maxLength) {
+            buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+        }
+        end = decodeBase64(jws, start, stop, buffer);
+        position = 0;
+    }
+
+    /**
+     * @param text - base64 or base64url, with or without padding
+     * @return - the decoded bytes
+     * @throws IOException - if the text is not base64
+     */
+    static byte[] decodeBase64(String text, int start, int stop) throws IOException {
+        byte[] out = new byte[(stop - start) * 3 / 4 + 3];
+        int length = decodeBase64(text, start, stop, out);
+        byte[] result = new byte[length];
+        System.arraycopy(out, 0, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Decodes base64 or base64url, with or without padding
+     * @param out - receives the bytes, at least 3/4 of the text long
+     * @return - the number of decoded bytes
+     */
+    private static int decodeBase64(String text, int start, int stop, byte[] out) throws IOException {
+        int length = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = start; i < stop; i++) {
+            char c = text.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                throw new IOException("Invalid base64url character at " + i);
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                out[length++] = (byte) (bits >> bitCount);
+            }
+        }
+        // a single character after the last full group holds less than a byte, the text was cut off
+        if (bitCount == 6) {
+            throw new IOException("Truncated base64");
+        }
+        return length;
+    }
+
+    private SafetyNetResponse parsePayload() throws IOException {
+        SafetyNetResponse.Builder builder = new SafetyNetResponse.Builder();
+        expect('{');
+        if (peek() == '}') {
+            position++;
+            return builder.build();
+        }
+        while (true) {
+            readKey();
+            expect(':');
+            if (isKey(NONCE)) {
+                builder.setNonce(readString());
+            } else if (isKey(TIMESTAMP_MS)) {
+                builder.setTimestampMs(readLong());
+            } else if (isKey(APK_PACKAGE_NAME)) {
+                builder.setApkPackageName(readString());
+            } else if (isKey(APK_CERTIFICATE_DIGEST_SHA256)) {
+                builder.setApkCertificateDigestSha256(readStringArray());
+            } else if (isKey(APK_DIGEST_SHA256)) {
+                builder.setApkDigestSha256(readString());
+            } else if (isKey(CTS_PROFILE_MATCH)) {
+                builder.setCtsProfileMatch(readBoolean());
+            } else if (isKey(BASIC_INTEGRITY)) {
+                builder.setBasicIntegrity(readBoolean());
+            } else if (isKey(ADVICE)) {
+                builder.setAdvice(readString());
+            } else {
+                skipValue();
+            }
+            byte next = next();
+            if (next == '}') {
+                return builder.build();
+            }
+            if (next != ',') {
+                throw error("Expected , or }");
+            }
+        }
+    }
+
+    private Header parseHeader() throws IOException {
+        String algorithm = null;
+        String[] certificateChain = null;
+        expect('{');
+        if (peek() == '}') {
+            position++;
+            return new Header(null, null);
+        }
+        while (true) {
+            readKey();
+            expect(':');
+            if (isKey(ALG)) {
+                algorithm = readString();
+            } else if (isKey(X5C)) {
+                certificateChain = readStringArray();
+            } else {
+                skipValue();
+            }
+            byte next = next();
+            if (next == '}') {
+                return new Header(algorithm, certificateChain);
+            }
+            if (next != ',') {
+                throw error("Expected , or }");
+            }
+        }
+    }
+
+    /**
+     * Reads a key and remembers where its raw bytes are, so it can be compared without building a string
+     */
+    private void readKey() throws IOException {
+        expect('"');
+        keyStart = position;
+        while (position < end && buffer[position] != '"') {
+            if (buffer[position] == '\\') {
+                // an escaped key is never one of ours, it still has to be skipped correctly
+                position++;
+            }
+            position++;
+        }
+        if (position >= end) {
+            throw error("Unterminated key");
+        }
+        keyEnd = position;
+        position++;
+    }
+
+    private boolean isKey(byte[] name) {
+        if (keyEnd - keyStart != name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (buffer[keyStart + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String readString() throws IOException {
+        if (skipNull()) {
+            return null;
+        }
+        expect('"');
+        chars.setLength(0);
+        while (true) {
+            if (position >= end) {
+                throw error("Unterminated string");
+            }
+            int b = buffer[position++] & 0xff;
+            if (b == '"') {
+                return chars.toString();
+            }
+            if (b == '\\') {
+                readEscape();
+            } else if (b < 0x80) {
+                chars.append((char) b);
+            } else {
+                readUtf8(b);
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        if (position >= end) {
+            throw error("Unterminated escape");
+        }
+        byte escaped = buffer[position++];
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                chars.append((char) escaped);
+                break;
+            case 'b':
+                chars.append('\b');
+                break;
+            case 'f':
+                chars.append('\f');
+                break;
+            case 'n':
+                chars.append('\n');
+                break;
+            case 'r':
+                chars.append('\r');
+                break;
+            case 't':
+                chars.append('\t');
+                break;
+            case 'u':
+                if (position + 4 > end) {
+                    throw error("Unterminated escape");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(buffer[position++], 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                chars.append((char) value);
+                break;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    private void readUtf8(int first) throws IOException {
+        int extra;
+        int codePoint;
+        if ((first & 0xe0) == 0xc0) {
+            extra = 1;
+            codePoint = first & 0x1f;
+        } else if ((first & 0xf0) == 0xe0) {
+            extra = 2;
+            codePoint = first & 0x0f;
+        } else if ((first & 0xf8) == 0xf0) {
+            extra = 3;
+            codePoint = first & 0x07;
+        } else {
+            throw error("Invalid UTF-8");
+        }
+        if (position + extra > end) {
+            throw error("Invalid UTF-8");
+        }
+        for (int i = 0; i < extra; i++) {
+            int b = buffer[position++] & 0xff;
+            if ((b & 0xc0) != 0x80) {
+                throw error("Invalid UTF-8");
+            }
+            codePoint = (codePoint << 6) | (b & 0x3f);
+        }
+        chars.appendCodePoint(codePoint);
+    }
+
+    private String[] readStringArray() throws IOException {
+        if (skipNull()) {
+            return null;
+        }
+        expect('[');
+        List<String> values = new ArrayList<>(2);
+        if (peek() == ']') {
+            position++;
+            return new String[0];
+        }
+        while (true) {
+            values.add(readString());
+            byte next = next();
+            if (next == ']') {
+                return values.toArray(new String[values.size()]);
+            }
+            if (next != ',') {
+                throw error("Expected , or ]");
+            }
+        }
+    }
+
+    private long readLong() throws IOException {
+        skipWhitespace();
+        int start = position;
+        boolean integer = true;
+        while (position < end) {
+            byte b = buffer[position];
+            if (b == '.' || b == 'e' || b == 'E') {
+                integer = false;
+            } else if (!(b >= '0' && b <= '9') && b != '-' && b != '+') {
+                break;
+            }
+            position++;
+        }
+        if (position == start) {
+            throw error("Expected a number");
+        }
+        if (!integer) {
+            return (long) Double.parseDouble(new String(buffer, start, position - start, "US-ASCII"));
+        }
+        boolean negative = buffer[start] == '-';
+        long value = 0;
+        for (int i = negative ? start + 1 : start; i < position; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw error("Invalid number");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean readBoolean() throws IOException {
+        skipWhitespace();
+        if (matchLiteral("true")) {
+            return true;
+        }
+        if (matchLiteral("false")) {
+            return false;
+        }
+        throw error("Expected a boolean");
+    }
+
+    private boolean skipNull() throws IOException {
+        skipWhitespace();
+        return matchLiteral("null");
+    }
+
+    private boolean matchLiteral(String literal) {
+        if (position + literal.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (buffer[position + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        position += literal.length();
+        return true;
+    }
+
+    /**
+     * Skips a value of any type, nested objects and arrays included, without building it
+     */
+    private void skipValue() throws IOException {
+        skipWhitespace();
+        if (position >= end) {
+            throw error("Expected a value");
+        }
+        byte first = buffer[position];
+        if (first == '"') {
+            position++;
+            while (position < end && buffer[position] != '"') {
+                position += buffer[position] == '\\' ? 2 : 1;
+            }
+            if (position >= end) {
+                throw error("Unterminated string");
+            }
+            position++;
+            return;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            while (position < end) {
+                byte b = buffer[position];
+                if (b == '"') {
+                    skipValue();
+                    continue;
+                }
+                position++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return;
+                    }
+                }
+            }
+            throw error("Unterminated " + (first == '{' ? "object" : "array"));
+        }
+        // a number, true, false or null
+        while (position < end) {
+            byte b = buffer[position];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        if (next() != c) {
+            throw error("Expected " + c);
+        }
+    }
+
+    private byte next() throws IOException {
+        skipWhitespace();
+        if (position >= end) {
+            throw error("Unexpected end of the segment");
+        }
+        return buffer[position++];
+    }
+
+    private byte peek() throws IOException {
+        skipWhitespace();
+        if (position >= end) {
+            throw error("Unexpected end of the segment");
+        }
+        return buffer[position];
+    }
+
+    private void skipWhitespace() {
+        while (position < end && isWhitespace(buffer[position])) {
+            position++;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at offset " + position + " of the segment");
+    }
+
+    /**
+     * The fields of a JWS header that are needed to verify the signature
+     */
+    static final class Header {
+
+        final String algorithm;
+        // the base64 DER certificates, the leaf first
+        final String[] certificateChain;
+
+        Header(String algorithm, String[] certificateChain) {
+            this.algorithm = algorithm;
+            this.certificateChain = certificateChain;
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        byte[] bytes = new byte[text.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return bytes;
+    }
+}
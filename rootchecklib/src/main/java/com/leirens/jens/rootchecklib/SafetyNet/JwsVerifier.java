@@ -0,0 +1,310 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+/**
+ * Verifies the signature of a SafetyNet JWS on the device, without a call to a verification service.
+ * The certificates of the x5c header must chain up to a trusted root and the leaf must be issued to
+ * attest.android.com, the token must be signed with RS256 by the leaf.
+ * A chain that was validated before is found by its fingerprint, so verifying another token of the same chain
+ * only costs the signature check. A verifier is thread safe.
+ * {@link #getDefault()} only trusts the roots of the Google attestation certificates.
+ */
+public class JwsVerifier {
+
+    /**
+     * The host name the leaf certificate of an attestation is issued to
+     */
+    public static final String ATTESTATION_HOSTNAME = "attest.android.com";
+
+    private static final int MAX_CACHED_CHAINS = 8;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static JwsVerifier defaultVerifier;
+
+    private final KeyStore trustStore;
+    private final String hostname;
+    private X509TrustManager trustManager;
+
+    // the leaf keys of the validated chains, by the fingerprint of the x5c header, least recently used first
+    private final Map<String, ValidatedChain> chains = new LinkedHashMap<String, ValidatedChain>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ValidatedChain> eldest) {
+            return size() > MAX_CACHED_CHAINS;
+        }
+    };
+
+    private final ThreadLocal<JwsDecoder> decoders = new ThreadLocal<JwsDecoder>() {
+        @Override
+        protected JwsDecoder initialValue() {
+            return new JwsDecoder();
+        }
+    };
+
+    /**
+     * @param pinnedRoots - the only roots the chain may end in
+     * @throws GeneralSecurityException - if the roots can not be put in a trust store
+     */
+    public JwsVerifier(X509Certificate... pinnedRoots) throws GeneralSecurityException {
+        this(createTrustStore(pinnedRoots), ATTESTATION_HOSTNAME);
+    }
+
+    /**
+     * @param trustStore - the trusted roots, null for the roots of the system
+     * @param hostname - the host name the leaf certificate must be issued to
+     */
+    JwsVerifier(KeyStore trustStore, String hostname) {
+        this.trustStore = trustStore;
+        this.hostname = hostname;
+    }
+
+    /**
+     * @return - the verifier that is shared by the library, it only trusts the pinned roots of the Google
+     * attestation certificates, the GlobalSign Root CA and the GTS Root R1
+     */
+    public static synchronized JwsVerifier getDefault() {
+        if (defaultVerifier == null) {
+            try {
+                defaultVerifier = new JwsVerifier(AttestationRoots.load());
+            } catch (GeneralSecurityException e) {
+                // the roots are part of the library, they always load
+                throw new IllegalStateException("Could not load the pinned roots", e);
+            }
+        }
+        return defaultVerifier;
+    }
+
+    /**
+     * Only use this when the roots of the Google attestation certificates change before the library is updated,
+     * the roots of the system include the CAs the user added, and on a rooted device anyone can add one
+     * @return - a verifier that trusts the roots of the system, they are loaded when the first chain is validated
+     */
+    public static JwsVerifier withSystemRoots() {
+        return new JwsVerifier(null, ATTESTATION_HOSTNAME);
+    }
+
+    private static KeyStore createTrustStore(X509Certificate[] roots) throws GeneralSecurityException {
+        if (roots.length == 0) {
+            throw new IllegalArgumentException("At least one pinned root is needed");
+        }
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        try {
+            keyStore.load(null, null);
+        } catch (IOException e) {
+            throw new GeneralSecurityException(e);
+        }
+        for (int i = 0; i < roots.length; i++) {
+            keyStore.setCertificateEntry("root" + i, roots[i]);
+        }
+        return keyStore;
+    }
+
+    /**
+     * @param jws - the compact JWS of an attestation
+     * @throws CertificateException - if the certificate chain is missing, not trusted, expired or not issued to
+     * attest.android.com
+     * @throws SignatureException - if the token is malformed, not RS256 or the signature does not match
+     * @throws GeneralSecurityException - if the verification could not be done
+     */
+    public void verify(String jws) throws GeneralSecurityException {
+        JwsDecoder.Header header;
+        try {
+            header = decoders.get().decodeHeader(jws);
+        } catch (IOException e) {
+            throw new SignatureException("Malformed JWS header: " + e.getMessage());
+        }
+        if (!"RS256".equals(header.algorithm)) {
+            throw new SignatureException("Unsupported algorithm " + header.algorithm);
+        }
+        if (header.certificateChain == null || header.certificateChain.length == 0) {
+            throw new CertificateException("The JWS has no x5c certificate chain");
+        }
+
+        PublicKey leafKey = getValidatedLeafKey(header.certificateChain);
+
+        int secondDot = jws.lastIndexOf('.');
+        byte[] signatureBytes;
+        try {
+            signatureBytes = JwsDecoder.decodeBase64(jws, secondDot + 1, jws.length());
+        } catch (IOException e) {
+            throw new SignatureException("Malformed JWS signature: " + e.getMessage());
+        }
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(leafKey);
+        // the signing input is the header and the payload as they were sent, which are ascii
+        byte[] signingInput = new byte[secondDot];
+        for (int i = 0; i < secondDot; i++) {
+            signingInput[i] = (byte) jws.charAt(i);
+        }
+        signature.update(signingInput);
+        if (!signature.verify(signatureBytes)) {
+            throw new SignatureException("The JWS signature does not match");
+        }
+    }
+
+    /**
+     * Validates the chain, or finds it in the validated chains
+     * @return - the key of the leaf certificate
+     */
+    private PublicKey getValidatedLeafKey(String[] certificateChain) throws GeneralSecurityException {
+        String fingerprint = fingerprint(certificateChain);
+        long now = System.currentTimeMillis();
+        synchronized (chains) {
+            ValidatedChain chain = chains.get(fingerprint);
+            if (chain != null && now < chain.notAfter && now >= chain.notBefore) {
+                return chain.leafKey;
+            }
+        }
+
+        X509Certificate[] certificates = parseCertificates(certificateChain);
+        getTrustManager().checkServerTrusted(certificates, "RSA");
+        X509Certificate leaf = certificates[0];
+        if (!isIssuedTo(leaf, hostname)) {
+            throw new CertificateException("The leaf certificate is not issued to " + hostname);
+        }
+
+        long notBefore = Long.MIN_VALUE;
+        long notAfter = Long.MAX_VALUE;
+        for (X509Certificate certificate : certificates) {
+            notBefore = Math.max(notBefore, certificate.getNotBefore().getTime());
+            notAfter = Math.min(notAfter, certificate.getNotAfter().getTime());
+        }
+        synchronized (chains) {
+            chains.put(fingerprint, new ValidatedChain(leaf.getPublicKey(), notBefore, notAfter));
+        }
+        return leaf.getPublicKey();
+    }
+
+    private synchronized X509TrustManager getTrustManager() throws GeneralSecurityException {
+        if (trustManager == null) {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore);
+            for (TrustManager candidate : factory.getTrustManagers()) {
+                if (candidate instanceof X509TrustManager) {
+                    trustManager = (X509TrustManager) candidate;
+                    break;
+                }
+            }
+            if (trustManager == null) {
+                throw new GeneralSecurityException("No X509TrustManager available");
+            }
+        }
+        return trustManager;
+    }
+
+    private static X509Certificate[] parseCertificates(String[] certificateChain) throws CertificateException {
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        X509Certificate[] certificates = new X509Certificate[certificateChain.length];
+        for (int i = 0; i < certificateChain.length; i++) {
+            try {
+                byte[] der = JwsDecoder.decodeBase64(certificateChain[i], 0, certificateChain[i].length());
+                certificates[i] = (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(der));
+            } catch (IOException e) {
+                throw new CertificateException("Malformed certificate in x5c: " + e.getMessage());
+            }
+        }
+        return certificates;
+    }
+
+    /**
+     * @return - true if a dns name of the certificate is the host name,
+     * the common name is only used when the certificate has no dns names
+     */
+    static boolean isIssuedTo(X509Certificate certificate, String hostname) throws CertificateParsingException {
+        Collection<List<?>> alternativeNames = certificate.getSubjectAlternativeNames();
+        boolean hasDnsName = false;
+        if (alternativeNames != null) {
+            for (List<?> alternativeName : alternativeNames) {
+                // type 2 is a dNSName
+                if (alternativeName.size() >= 2 && Integer.valueOf(2).equals(alternativeName.get(0))) {
+                    hasDnsName = true;
+                    if (hostname.equalsIgnoreCase(String.valueOf(alternativeName.get(1)))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        if (hasDnsName) {
+            return false;
+        }
+        String commonName = getCommonName(certificate.getSubjectX500Principal().getName());
+        return commonName != null && hostname.equalsIgnoreCase(commonName);
+    }
+
+    /**
+     * @param name - a distinguished name in the RFC 2253 format, like "CN=attest.android.com,O=Google LLC"
+     * @return - the value of the first CN, null if it has none
+     */
+    private static String getCommonName(String name) {
+        int start = 0;
+        while (start < name.length()) {
+            int end = start;
+            // find the next separator that is not escaped
+            while (end < name.length() && name.charAt(end) != ',') {
+                end += name.charAt(end) == '\\' ? 2 : 1;
+            }
+            end = Math.min(end, name.length());
+            if (name.regionMatches(true, start, "CN=", 0, 3)) {
+                return name.substring(start + 3, end);
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static String fingerprint(String[] certificateChain) throws GeneralSecurityException {
+        int length = 0;
+        for (String certificate : certificateChain) {
+            length += certificate.length() + 1;
+        }
+        // base64 is ascii, the certificates are separated by a comma
+        byte[] chain = new byte[length];
+        int position = 0;
+        for (String certificate : certificateChain) {
+            for (int i = 0; i < certificate.length(); i++) {
+                chain[position++] = (byte) certificate.charAt(i);
+            }
+            chain[position++] = ',';
+        }
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(chain);
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private static final class ValidatedChain {
+
+        final PublicKey leafKey;
+        final long notBefore;
+        final long notAfter;
+
+        ValidatedChain(PublicKey leafKey, long notBefore, long notAfter) {
+            this.leafKey = leafKey;
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.google.android.gms.safetynet.SafetyNet;
+import com.google.android.gms.safetynet.SafetyNetApi;
+import com.google.android.gms.safetynet.SafetyNetClient;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Attests with the SafetyNet client of Google Play services
+ */
+public class PlayServicesAttestationClient implements AttestationClient {
+
+    // the result is handed on right away, so it does not need a trip through the main thread
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final SafetyNetClient client;
+
+    /**
+     * @param context - any context, the application context is used
+     */
+    public PlayServicesAttestationClient(Context context) {
+        this.client = SafetyNet.getClient(context.getApplicationContext());
+    }
+
+    @Override
+    public void attest(byte[] nonce, String apiKey, final Callback callback) {
+        client.attest(nonce, apiKey)
+                .addOnSuccessListener(DIRECT, new OnSuccessListener<SafetyNetApi.AttestationResponse>() {
+                    @Override
+                    public void onSuccess(SafetyNetApi.AttestationResponse attestationResponse) {
+                        callback.onSuccess(attestationResponse.getJwsResult());
+                    }
+                })
+                .addOnFailureListener(DIRECT, new OnFailureListener() {
+                    @Override
+                    public void onFailure(@NonNull Exception e) {
+                        callback.onFailure(e);
+                    }
+                });
+    }
+}
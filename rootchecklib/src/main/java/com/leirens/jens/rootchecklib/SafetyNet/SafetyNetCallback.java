@@ -0,0 +1,18 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+/**
+ * Receives the outcome of {@link SafetyNetHelper#attest(SafetyNetCallback)}.
+ * Exactly one of the methods is called once, unless the task was cancelled before.
+ */
+public interface SafetyNetCallback {
+
+    /**
+     * @param response - the parsed attestation result, shared with the other callers of the same attestation
+     */
+    void onResponse(SafetyNetResponse response);
+
+    /**
+     * @param e - why the attestation failed, an ApiException for errors of the service
+     */
+    void onError(Exception e);
+}
@@ -2,161 +2,385 @@ package com.leirens.jens.rootchecklib.SafetyNet;
 
 import android.app.Activity;
 import android.content.Context;
-import android.support.annotation.NonNull;
-import android.util.Base64;
-import android.util.Log;
-import android.view.View;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.CommonStatusCodes;
-import com.google.android.gms.safetynet.SafetyNet;
-import com.google.android.gms.safetynet.SafetyNetApi;
-import com.google.android.gms.safetynet.SafetyNetClient;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
-import com.leirens.jens.rootchecklib.BuildConfig;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.leirens.jens.rootchecklib.RootCheckLog;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Requests SafetyNet attestations.
+ * Every call of {@link #attest(Executor, SafetyNetCallback)} gets its own task and callback, but concurrent calls
+ * share a single attestation, so a burst of requests costs one network round trip and one unit of the quota.
+ * With a {@link SafetyNetVerdictCache} a recent verdict is served without an attestation at all.
+ * A result is only accepted when it carries the nonce of the request, the package of the app and a timestamp
+ * close to the request, so a signed result of another device or request can not be replayed.
+ */
 public class SafetyNetHelper {
 
-    private SafetyNetResponse safetyNetResponse;
+    /**
+     * How far the timestamp of a result may be from the time of the request, the clock of the device may be off
+     */
+    public static final long MAX_TIMESTAMP_SKEW_MILLIS = 10 * 60 * 1000L;
+
+    private static ExecutorService background;
+
+    // the attestation results arrive on the threads of Play services, every thread keeps its own decoder
+    private static final ThreadLocal<JwsDecoder> DECODERS = new ThreadLocal<JwsDecoder>() {
+        @Override
+        protected JwsDecoder initialValue() {
+            return new JwsDecoder();
+        }
+    };
+
     private final String TAG = SafetyNetHelper.class.getSimpleName();
 
+    private final Object lock = new Object();
+    private final Executor mainThread = new Executor() {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    };
+
+    private AttestationClient client;
+    private String apiKey;
+    private String packageName;
+    // the requests waiting for the attestation that is in flight, null when no attestation is in flight
+    private List<AttestationTask> waiting;
+    private SafetyNetVerdictCache verdictCache;
+    private JwsVerifier verifier = JwsVerifier.getDefault();
+    private volatile SafetyNetResponse safetyNetResponse;
+
+    /**
+     * Only for {@link #sendRequest(Activity, String)}, which creates the client from the activity
+     */
     public SafetyNetHelper() {
     }
 
-    public SafetyNetResponse getSafetyNetResponse() {
-        return safetyNetResponse;
+    /**
+     * The Google Play services client is behind the {@link AttestationScheduler} of the api key,
+     * which is shared by every helper of the process
+     * @param context - any context, used for the Google Play services client
+     * @param apiKey - your api key from google to call the SafetyNet service
+     */
+    public SafetyNetHelper(Context context, String apiKey) {
+        this(AttestationScheduler.forApiKey(context, apiKey), apiKey);
+        this.packageName = context.getPackageName();
     }
 
     /**
-     * Parse the JWS string into a decoded JWT
-     *
-     * @param jwsResult JWS String that is recieved from the google SafetNet Api
+     * @param client - sends the attestations, a stand-in lets the pipeline run without Google Play services
+     * @param apiKey - your api key from google to call the SafetyNet service
      */
-    public void parseJWS(String jwsResult){
+    public SafetyNetHelper(AttestationClient client, String apiKey) {
+        this.client = client;
+        this.apiKey = apiKey;
+    }
+
+    // reads the verdict cache and hashes the APK, off the main thread
+    private static synchronized ExecutorService getBackground() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-safetynet");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return background;
+    }
 
-        if (jwsResult != null) {
+    /**
+     * @param verifier - checks the signature of every attestation result before it is parsed,
+     *                 {@link JwsVerifier#getDefault()} by default, null to skip the check,
+     *                 which lets any forged result through
+     * @return - this helper
+     */
+    public SafetyNetHelper setVerifier(JwsVerifier verifier) {
+        synchronized (lock) {
+            this.verifier = verifier;
+        }
+        return this;
+    }
 
-            //the JWT (JSON WEB TOKEN) is just a 3 base64 encoded parts concatenated by a . character
-            final String[] jwtParts = jwsResult.split("\\.");
+    /**
+     * @param packageName - the package the results must be for, the package of the context with the context
+     *                    constructor, null to accept a result for any package
+     * @return - this helper
+     */
+    public SafetyNetHelper setPackageName(String packageName) {
+        synchronized (lock) {
+            this.packageName = packageName;
+        }
+        return this;
+    }
 
-            if (jwtParts.length == 3) {
-                //we're only really interested in the body/payload
-                String decodedPayload = new String(Base64.decode(jwtParts[1], Base64.DEFAULT));
-                parse(decodedPayload);
-            }
+    /**
+     * @param verdictCache - serves recent verdicts and stores new ones, null to always attest
+     * @return - this helper
+     */
+    public SafetyNetHelper setVerdictCache(SafetyNetVerdictCache verdictCache) {
+        synchronized (lock) {
+            this.verdictCache = verdictCache;
         }
+        return this;
     }
 
     /**
-     * Parse the JSON string into populated SafetyNetResponse object
-     *
-     * @param decodedJWTPayload JSON String (always a json string according to JWT spec)
+     * @return - the response of the last attestation that succeeded, null if there was none yet
      */
-    private void parse(@NonNull String decodedJWTPayload) {
-        safetyNetResponse = new SafetyNetResponse();
+    public SafetyNetResponse getSafetyNetResponse() {
+        return safetyNetResponse;
+    }
 
-        Log.d(TAG, "decodedJWTPayload json:" + decodedJWTPayload);
+    /**
+     * Requests an attestation and delivers the result on the main thread
+     * @param callback - receives the result on the main thread, may be null when the task is used as a future
+     * @return - the task of this request
+     */
+    public AttestationTask attest(SafetyNetCallback callback) {
+        return attest(mainThread, callback);
+    }
 
-        try {
-            JSONObject root = new JSONObject(decodedJWTPayload);
-            if (root.has("nonce")) {
-                safetyNetResponse.setNonce(root.getString("nonce"));
+    /**
+     * Requests an attestation, serves it from the verdict cache if it has a recent verdict and otherwise
+     * joins the attestation that is in flight if there is one
+     * @param callbackExecutor - the executor the callback is delivered on
+     * @param callback - receives the result, may be null when the task is used as a future
+     * @return - the task of this request
+     */
+    public AttestationTask attest(Executor callbackExecutor, SafetyNetCallback callback) {
+        final AttestationTask task = new AttestationTask(callbackExecutor, callback);
+        final SafetyNetVerdictCache cache;
+        synchronized (lock) {
+            if (client == null) {
+                throw new IllegalStateException("No attestation client, use a constructor with a client or context");
             }
+            cache = verdictCache;
+        }
+        if (cache == null) {
+            join(task, null);
+            return task;
+        }
 
-            if (root.has("apkCertificateDigestSha256")) {
-                JSONArray jsonArray = root.getJSONArray("apkCertificateDigestSha256");
-                if (jsonArray != null) {
-                    String[] certDigests = new String[jsonArray.length()];
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        certDigests[i] = jsonArray.getString(i);
-                    }
-                    safetyNetResponse.setApkCertificateDigestSha256(certDigests);
+        getBackground().execute(new Runnable() {
+            @Override
+            public void run() {
+                SafetyNetResponse cached;
+                try {
+                    cached = cache.get();
+                } catch (IOException e) {
+                    RootCheckLog.e(TAG, "The verdict cache can not be used: " + e);
+                    join(task, null);
+                    return;
+                }
+                if (cached == null) {
+                    join(task, cache);
+                    return;
+                }
+                safetyNetResponse = cached;
+                task.complete(cached, null);
+                if (cache.needsRefresh(cached)) {
+                    // refresh ahead of the max age, nobody waits for it
+                    join(null, cache);
                 }
             }
+        });
+        return task;
+    }
 
-            if (root.has("apkDigestSha256")) {
-                safetyNetResponse.setApkDigestSha256(root.getString("apkDigestSha256"));
+    /**
+     * Adds the task to the attestation that is in flight, or starts a new attestation
+     * @param task - the task to complete with the result, null for a refresh that nobody waits for
+     * @param cache - gets the new verdict, may be null
+     */
+    private void join(AttestationTask task, final SafetyNetVerdictCache cache) {
+        AttestationClient attestationClient;
+        String key;
+        final String expectedPackage;
+        synchronized (lock) {
+            if (waiting != null) {
+                if (task != null) {
+                    waiting.add(task);
+                }
+                return;
             }
-
-            if (root.has("apkPackageName")) {
-                safetyNetResponse.setApkPackageName(root.getString("apkPackageName"));
+            waiting = new ArrayList<>();
+            if (task != null) {
+                waiting.add(task);
             }
+            attestationClient = client;
+            key = apiKey;
+            expectedPackage = packageName;
+        }
 
-            if (root.has("basicIntegrity")) {
-                safetyNetResponse.setBasicIntegrity(root.getBoolean("basicIntegrity"));
-            }
+        final long requestedAt = System.currentTimeMillis();
+        String nonceData = "RootChecker application: " + requestedAt;
+        final byte[] nonce = getRequestNonce(nonceData);
+        try {
+            attestationClient.attest(nonce, key, new AttestationClient.Callback() {
+                @Override
+                public void onSuccess(final String jwsResult) {
+                    final SafetyNetResponse response;
+                    try {
+                        response = decode(jwsResult);
+                        checkRequest(response, nonce, expectedPackage, requestedAt);
+                    } catch (IOException | GeneralSecurityException e) {
+                        RootCheckLog.e(TAG, "problem parsing the JWS: " + e.getMessage());
+                        finish(null, e);
+                        return;
+                    }
+                    safetyNetResponse = response;
+                    finish(response, null);
+                    if (cache != null) {
+                        getBackground().execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    cache.put(jwsResult, response);
+                                } catch (IOException e) {
+                                    RootCheckLog.e(TAG, "Could not cache the verdict: " + e);
+                                }
+                            }
+                        });
+                    }
+                }
 
-            if (root.has("ctsProfileMatch")) {
-                safetyNetResponse.setCtsProfileMatch(root.getBoolean("ctsProfileMatch"));
-            }
+                @Override
+                public void onFailure(Exception e) {
+                    logFailure(e);
+                    finish(null, e);
+                }
+            });
+        } catch (RuntimeException e) {
+            logFailure(e);
+            finish(null, e);
+        }
+    }
 
-            if (root.has("timestampMs")) {
-                safetyNetResponse.setTimestampMs(root.getLong("timestampMs"));
-            }
+    /**
+     * Completes every request that waited for the attestation and clears it, so the next request starts a new one
+     */
+    private void finish(SafetyNetResponse response, Exception error) {
+        List<AttestationTask> tasks;
+        synchronized (lock) {
+            tasks = waiting;
+            waiting = null;
+        }
+        if (tasks == null) {
+            return;
+        }
+        for (AttestationTask task : tasks) {
+            task.complete(response, error);
+        }
+    }
 
-            if (root.has("advice")) {
-                safetyNetResponse.setAdvice(root.getString("advice"));
-            }
+    /**
+     * Verify the signature of the JWS string and parse it into a decoded JWT
+     *
+     * @param jwsResult JWS String that is recieved from the google SafetNet Api
+     * @return - the parsed response, null if the JWS could not be verified or parsed
+     */
+    public SafetyNetResponse parseJWS(String jwsResult){
+        try {
+            SafetyNetResponse response = decode(jwsResult);
+            safetyNetResponse = response;
+            return response;
+        } catch (IOException | GeneralSecurityException e) {
+            RootCheckLog.e(TAG, "problem parsing the JWS: " + e.getMessage());
+            return null;
+        }
+    }
 
-        } catch (JSONException e) {
-            Log.e(TAG, "problem parsing decodedJWTPayload:" + e.getMessage(), e);
+    private SafetyNetResponse decode(String jwsResult) throws IOException, GeneralSecurityException {
+        JwsVerifier jwsVerifier;
+        synchronized (lock) {
+            jwsVerifier = verifier;
+        }
+        if (jwsVerifier != null) {
+            jwsVerifier.verify(jwsResult);
+        }
+        return DECODERS.get().decode(jwsResult);
+    }
+
+    /**
+     * @param response - the verified result
+     * @param nonce - the nonce that was sent with the request
+     * @param expectedPackage - the package of the app, null to accept any package
+     * @param requestedAt - when the request was sent
+     * @throws GeneralSecurityException - if the result is not the result of this request
+     */
+    private static void checkRequest(SafetyNetResponse response, byte[] nonce, String expectedPackage,
+                                     long requestedAt) throws GeneralSecurityException {
+        byte[] responseNonce;
+        try {
+            responseNonce = response.getNonce() != null
+                    ? JwsDecoder.decodeBase64(response.getNonce(), 0, response.getNonce().length()) : null;
+        } catch (IOException e) {
+            responseNonce = null;
+        }
+        if (nonce == null || responseNonce == null || !MessageDigest.isEqual(nonce, responseNonce)) {
+            throw new GeneralSecurityException("The result does not carry the nonce of the request");
+        }
+        if (expectedPackage != null && !expectedPackage.equals(response.getApkPackageName())) {
+            throw new GeneralSecurityException("The result is for " + response.getApkPackageName());
+        }
+        long now = System.currentTimeMillis();
+        if (response.getTimestampMs() < requestedAt - MAX_TIMESTAMP_SKEW_MILLIS
+                || response.getTimestampMs() > now + MAX_TIMESTAMP_SKEW_MILLIS) {
+            throw new GeneralSecurityException("The timestamp of the result is not close to the request");
         }
     }
 
     /**
      * Sends the request to the google api and handles the response for you.
-     * the api call happens asynchronously
-     * you problably want to implement this yourself
+     * the api call happens asynchronously, the result is available from {@link #getSafetyNetResponse()}
      * @param callingActivity the activty that want to make the request
      * @param apikey your api key from google to call the SafetyNet service
+     * @deprecated use {@link #attest(SafetyNetCallback)}, which tells you when the result is available
      */
+    @Deprecated
     public void sendRequest(Activity callingActivity, String apikey) {
-        String nonceData = "RootChecker application: " + System.currentTimeMillis();
-        byte[] nonce = getRequestNonce(nonceData);
-
-        // first get a safetynetclient for the foreground activity
-        SafetyNetClient client = SafetyNet.getClient(callingActivity.getApplicationContext());
-
-        // make the call
-        Task<SafetyNetApi.AttestationResponse> task = client.attest(nonce , apikey);
-        task.addOnSuccessListener(callingActivity, mSucceslistener)
-                .addOnFailureListener(callingActivity, mFailureListener);
-    }
-
-    private OnSuccessListener<SafetyNetApi.AttestationResponse> mSucceslistener = new OnSuccessListener<SafetyNetApi.AttestationResponse>() {
-        @Override
-        public void onSuccess(SafetyNetApi.AttestationResponse attestationResponse) {
-            String mResult;
-            mResult = attestationResponse.getJwsResult();
-            Log.d("SafetenetAPI", "Succes; Result= " + mResult);
-            parseJWS(mResult);
+        synchronized (lock) {
+            if (client == null) {
+                client = AttestationScheduler.forApiKey(callingActivity, apikey);
+                packageName = callingActivity.getPackageName();
+            }
+            apiKey = apikey;
         }
-    };
+        attest(null);
+    }
 
-    private OnFailureListener mFailureListener = new OnFailureListener() {
-        @Override
-        public void onFailure(@NonNull Exception e) {
-
-            if ( e instanceof ApiException) {
-                ApiException apiException = (ApiException) e ;
-                Log.e("SafetyNetAPI", "API exception Error: " + CommonStatusCodes.getStatusCodeString(apiException.getStatusCode())
-                        + ": " + apiException.getStatusCode() + " message: " + e.getMessage()) ;
-            } else {
-                Log.e("SafetyNetAPI", "Error: " + e.getMessage()) ;
-            }
+    private void logFailure(Exception e) {
+        if (e instanceof AttestationThrottledException) {
+            RootCheckLog.w("SafetyNetAPI", e.getMessage());
+        } else if ( e instanceof ApiException) {
+            ApiException apiException = (ApiException) e ;
+            RootCheckLog.e("SafetyNetAPI", "API exception Error: " + CommonStatusCodes.getStatusCodeString(apiException.getStatusCode())
+                    + ": " + apiException.getStatusCode() + " message: " + e.getMessage()) ;
+        } else {
+            RootCheckLog.e("SafetyNetAPI", "Error: " + e.getMessage()) ;
         }
-    };
+    }
 
     /**
      * converts the data string to an array of bytes
@@ -1,19 +1,30 @@
 package com.leirens.jens.rootchecklib.SafetyNet;
 import com.leirens.jens.rootchecklib.BuildConfig;
 
+/**
+ * The parsed result of an attestation, immutable so it can be shared between all callers of the attestation.
+ * Create it with a {@link Builder}.
+ */
 public class SafetyNetResponse {
 
-    private String nonce;
-    private long timestampMs;
-    private String apkPackageName = BuildConfig.APPLICATION_ID;
-    private String[] apkCertificateDigestSha256;
-    private String apkDigestSha256;
-    private boolean ctsProfileMatch;
-    private boolean basicIntegrity;
-    private String advice = "/";
-
-    //forces the parse()
-    public SafetyNetResponse() {
+    private final String nonce;
+    private final long timestampMs;
+    private final String apkPackageName;
+    private final String[] apkCertificateDigestSha256;
+    private final String apkDigestSha256;
+    private final boolean ctsProfileMatch;
+    private final boolean basicIntegrity;
+    private final String advice;
+
+    private SafetyNetResponse(Builder builder) {
+        this.nonce = builder.nonce;
+        this.timestampMs = builder.timestampMs;
+        this.apkPackageName = builder.apkPackageName;
+        this.apkCertificateDigestSha256 = builder.apkCertificateDigestSha256;
+        this.apkDigestSha256 = builder.apkDigestSha256;
+        this.ctsProfileMatch = builder.ctsProfileMatch;
+        this.basicIntegrity = builder.basicIntegrity;
+        this.advice = builder.advice;
     }
 
     /**
@@ -40,7 +51,7 @@ public class SafetyNetResponse {
      * @return BASE64 encoded
      */
     public String[] getApkCertificateDigestSha256() {
-        return apkCertificateDigestSha256;
+        return apkCertificateDigestSha256 != null ? apkCertificateDigestSha256.clone() : null;
     }
 
     /**
@@ -74,41 +85,66 @@ public class SafetyNetResponse {
         return advice;
     }
 
-    public void setAdvice(String advice) {
-        this.advice = advice;
-    }
-
-    public void setNonce(String nonce) {
-        this.nonce = nonce;
-    }
-
-    public void setTimestampMs(long timestampMs) {
-        this.timestampMs = timestampMs;
-    }
-
-    public void setApkPackageName(String apkPackageName) {
-        this.apkPackageName = apkPackageName;
-    }
-
-    public void setApkCertificateDigestSha256(String[] apkCertificateDigestSha256) {
-        this.apkCertificateDigestSha256 = apkCertificateDigestSha256;
-    }
-
-    public void setApkDigestSha256(String apkDigestSha256) {
-        this.apkDigestSha256 = apkDigestSha256;
-    }
-
-    public void setCtsProfileMatch(boolean ctsProfileMatch) {
-        this.ctsProfileMatch = ctsProfileMatch;
-    }
-
-    public void setBasicIntegrity(boolean basicIntegrity) {
-        this.basicIntegrity = basicIntegrity;
-    }
-
     @Override
     public String toString() {
         return String.format("Package Name: %s%nBasic integrity: %b%nctsProfileMatch: %b%nAdvice: %s",
                 apkPackageName,basicIntegrity,ctsProfileMatch,advice);
     }
-}
\ No newline at end of file
+
+    public static class Builder {
+
+        private String nonce;
+        private long timestampMs;
+        private String apkPackageName = BuildConfig.APPLICATION_ID;
+        private String[] apkCertificateDigestSha256;
+        private String apkDigestSha256;
+        private boolean ctsProfileMatch;
+        private boolean basicIntegrity;
+        private String advice = "/";
+
+        public Builder setNonce(String nonce) {
+            this.nonce = nonce;
+            return this;
+        }
+
+        public Builder setTimestampMs(long timestampMs) {
+            this.timestampMs = timestampMs;
+            return this;
+        }
+
+        public Builder setApkPackageName(String apkPackageName) {
+            this.apkPackageName = apkPackageName;
+            return this;
+        }
+
+        public Builder setApkCertificateDigestSha256(String[] apkCertificateDigestSha256) {
+            this.apkCertificateDigestSha256 = apkCertificateDigestSha256 != null
+                    ? apkCertificateDigestSha256.clone() : null;
+            return this;
+        }
+
+        public Builder setApkDigestSha256(String apkDigestSha256) {
+            this.apkDigestSha256 = apkDigestSha256;
+            return this;
+        }
+
+        public Builder setCtsProfileMatch(boolean ctsProfileMatch) {
+            this.ctsProfileMatch = ctsProfileMatch;
+            return this;
+        }
+
+        public Builder setBasicIntegrity(boolean basicIntegrity) {
+            this.basicIntegrity = basicIntegrity;
+            return this;
+        }
+
+        public Builder setAdvice(String advice) {
+            this.advice = advice;
+            return this;
+        }
+
+        public SafetyNetResponse build() {
+            return new SafetyNetResponse(this);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import android.content.Context;
+import android.util.Base64;
+
+import com.leirens.jens.rootchecklib.RootCheckLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keeps the last attestation verdict of the app in memory and in a small file, keyed by the package and the SHA-256
+ * of the APK, so an update of the app never gets the verdict of the old APK.
+ * A verdict is served until it is older than the max age, once it is close to that age
+ * {@link SafetyNetHelper} refreshes it in the background while it keeps serving it.
+ * The file holds the signed JWS of every verdict, which is verified again when the file is read,
+ * so a verdict that was edited in the file is never served.
+ * The caches of the same file share their verdicts, their lock and their verifier, however many are created.
+ * The methods read files and hash the APK, so call them from a background thread.
+ */
+public class SafetyNetVerdictCache {
+
+    private static final String TAG = "SafetyNetVerdictCache";
+
+    /**
+     * The name of the cache file in the files directory of the app
+     */
+    public static final String FILE_NAME = "safetynet_verdicts.bin";
+
+    private static final int MAGIC = 0x52435643; // "RCVC"
+    private static final int FORMAT_VERSION = 2;
+
+    // the largest JWS that is read from the file, a JWS with its certificate chain is a few kilobytes
+    private static final int MAX_JWS_LENGTH = 64 * 1024;
+
+    private static final Map<String, Store> STORES = new HashMap<>();
+
+    private final Store store;
+    private final String packageName;
+    private final File apkFile;
+    private final long maxAgeMillis;
+    private long refreshAheadMillis;
+
+    // the digest of the APK, only hashed again when the APK file changes, guarded by apkLock
+    private final Object apkLock = new Object();
+    private String apkDigest;
+    private long apkDigestLength = -1;
+    private long apkDigestModified = -1;
+
+    /**
+     * @param context - any context, used for the files directory, the package name and the APK
+     * @param maxAgeMillis - how long a verdict is served
+     */
+    public SafetyNetVerdictCache(Context context, long maxAgeMillis) {
+        this(new File(context.getFilesDir(), FILE_NAME), context.getPackageName(),
+                new File(context.getApplicationInfo().sourceDir), maxAgeMillis);
+    }
+
+    /**
+     * @param file - the file the verdicts are stored in
+     * @param packageName - the package of the app
+     * @param apkFile - the APK of the app, the verdicts are keyed by its SHA-256
+     * @param maxAgeMillis - how long a verdict is served
+     */
+    public SafetyNetVerdictCache(File file, String packageName, File apkFile, long maxAgeMillis) {
+        this(file, packageName, apkFile, maxAgeMillis, JwsVerifier.getDefault());
+    }
+
+    /**
+     * @param file - the file the verdicts are stored in
+     * @param packageName - the package of the app
+     * @param apkFile - the APK of the app, the verdicts are keyed by its SHA-256
+     * @param maxAgeMillis - how long a verdict is served
+     * @param verifier - verifies the stored verdicts when the file is read, null to trust the file,
+     *                 which lets anyone who can write it forge a verdict
+     * @throws IllegalArgumentException - if another cache of the same file uses another verifier
+     */
+    public SafetyNetVerdictCache(File file, String packageName, File apkFile, long maxAgeMillis,
+                                 JwsVerifier verifier) {
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxAgeMillis must be positive");
+        }
+        this.store = storeOf(file, verifier);
+        this.packageName = packageName;
+        this.apkFile = apkFile;
+        this.maxAgeMillis = maxAgeMillis;
+        this.refreshAheadMillis = maxAgeMillis / 5;
+    }
+
+    private static synchronized Store storeOf(File file, JwsVerifier verifier) {
+        String path = file.getAbsolutePath();
+        Store store = STORES.get(path);
+        if (store == null) {
+            store = new Store(file, verifier);
+            STORES.put(path, store);
+        } else if (store.verifier != verifier) {
+            // the verdicts are verified once when the file is read, they can not be trusted by one verifier only
+            throw new IllegalArgumentException("The verdicts of " + file + " are verified by another verifier");
+        }
+        return store;
+    }
+
+    /**
+     * @param refreshAheadMillis - how long before the max age a verdict is refreshed in the background,
+     *                           a fifth of the max age by default
+     * @return - this cache
+     */
+    public synchronized SafetyNetVerdictCache setRefreshAhead(long refreshAheadMillis) {
+        if (refreshAheadMillis < 0 || refreshAheadMillis > maxAgeMillis) {
+            throw new IllegalArgumentException("refreshAheadMillis must be between 0 and the max age");
+        }
+        this.refreshAheadMillis = refreshAheadMillis;
+        return this;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * @return - the verdict of the current APK if it is younger than the max age, null otherwise
+     * @throws IOException - if the APK could not be hashed, no verdict can be served then
+     */
+    public SafetyNetResponse get() throws IOException {
+        // hashing the APK takes a while, the other caches of the file do not wait for it
+        String digest = getApkDigest();
+        synchronized (store) {
+            store.load();
+            Entry entry = store.verdicts.get(keyOf(digest));
+            if (entry == null || !isForThisApp(entry.verdict, digest)) {
+                return null;
+            }
+            long age = ageOf(entry.verdict);
+            // a verdict from the future was forged or the clock was set back, it can not be trusted to be recent
+            return age >= 0 && age <= maxAgeMillis ? entry.verdict : null;
+        }
+    }
+
+    /**
+     * @param verdict - a verdict of this cache
+     * @return - true if the verdict is close enough to its max age to be refreshed
+     */
+    public synchronized boolean needsRefresh(SafetyNetResponse verdict) {
+        long age = ageOf(verdict);
+        return age < 0 || age >= maxAgeMillis - refreshAheadMillis;
+    }
+
+    /**
+     * Stores the verdict for the current APK, a verdict for another package or APK is ignored
+     * @param jws - the signed attestation result the verdict was decoded from, it is what is stored in the file
+     * @param verdict - the verified and decoded result
+     * @throws IOException - if the APK could not be hashed, the verdict is not stored then
+     */
+    public void put(String jws, SafetyNetResponse verdict) throws IOException {
+        String digest = getApkDigest();
+        String key = keyOf(digest);
+        synchronized (store) {
+            store.load();
+            if (!isForThisApp(verdict, digest)) {
+                return;
+            }
+            // only the verdict of the current APK is useful, the verdicts of older versions are dropped
+            Iterator<String> keys = store.verdicts.keySet().iterator();
+            while (keys.hasNext()) {
+                if (!keys.next().equals(key)) {
+                    keys.remove();
+                }
+            }
+            store.verdicts.put(key, new Entry(jws, verdict));
+            store.write();
+        }
+    }
+
+    /**
+     * Removes all verdicts from memory and from the file
+     */
+    public void clear() {
+        synchronized (store) {
+            store.verdicts.clear();
+            store.loaded = true;
+            if (store.file.exists() && !store.file.delete()) {
+                RootCheckLog.w(TAG, "Could not delete " + store.file);
+            }
+        }
+    }
+
+    private boolean isForThisApp(SafetyNetResponse verdict, String digest) {
+        if (!packageName.equals(verdict.getApkPackageName())) {
+            return false;
+        }
+        if (verdict.getApkDigestSha256() != null && !verdict.getApkDigestSha256().equals(digest)) {
+            RootCheckLog.w(TAG, "The attested APK is not the installed APK, the verdict is not used");
+            return false;
+        }
+        return true;
+    }
+
+    private long ageOf(SafetyNetResponse verdict) {
+        return System.currentTimeMillis() - verdict.getTimestampMs();
+    }
+
+    private String keyOf(String digest) {
+        return packageName + '\n' + digest;
+    }
+
+    private String getApkDigest() throws IOException {
+        synchronized (apkLock) {
+            long length = apkFile.length();
+            long modified = apkFile.lastModified();
+            if (apkDigest == null || length != apkDigestLength || modified != apkDigestModified) {
+                apkDigest = sha256(apkFile);
+                apkDigestLength = length;
+                apkDigestModified = modified;
+            }
+            return apkDigest;
+        }
+    }
+
+    private static String sha256(File apk) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = new FileInputStream(apk);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        // the same encoding as apkDigestSha256 in the attestation
+        return Base64.encodeToString(digest.digest(), Base64.NO_WRAP);
+    }
+
+    private static final class Entry {
+
+        final String jws;
+        final SafetyNetResponse verdict;
+
+        Entry(String jws, SafetyNetResponse verdict) {
+            this.jws = jws;
+            this.verdict = verdict;
+        }
+    }
+
+    /**
+     * The verdicts of one file, shared by every cache of that file and the lock of its reads and writes
+     */
+    private static final class Store {
+
+        final File file;
+        final JwsVerifier verifier;
+        final Map<String, Entry> verdicts = new HashMap<>();
+        boolean loaded;
+
+        Store(File file, JwsVerifier verifier) {
+            this.file = file;
+            this.verifier = verifier;
+        }
+
+        /**
+         * Reads the file the first time, every JWS is verified and decoded again, a JWS that does not verify is dropped
+         */
+        void load() {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!file.exists()) {
+                return;
+            }
+            JwsDecoder decoder = new JwsDecoder();
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try {
+                    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                        RootCheckLog.w(TAG, "Ignoring " + file + ", unknown format");
+                        return;
+                    }
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String key = in.readUTF();
+                        String jws = readJws(in);
+                        try {
+                            if (verifier != null) {
+                                verifier.verify(jws);
+                            }
+                            verdicts.put(key, new Entry(jws, decoder.decode(jws)));
+                        } catch (IOException | GeneralSecurityException e) {
+                            RootCheckLog.w(TAG, "Dropping a cached verdict that does not verify: " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                RootCheckLog.e(TAG, "Could not read the cached verdicts: " + e);
+                verdicts.clear();
+            }
+        }
+
+        void write() {
+            File temp = new File(file.getPath() + ".tmp");
+            try {
+                FileOutputStream fileOut = new FileOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+                try {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeInt(verdicts.size());
+                    for (Map.Entry<String, Entry> entry : verdicts.entrySet()) {
+                        out.writeUTF(entry.getKey());
+                        writeJws(out, entry.getValue().jws);
+                    }
+                    out.flush();
+                    fileOut.getFD().sync();
+                } finally {
+                    out.close();
+                }
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Could not rename " + temp);
+                }
+            } catch (IOException e) {
+                RootCheckLog.e(TAG, "Could not store the verdicts: " + e);
+                temp.delete();
+            }
+        }
+
+        // a JWS is ascii, it can be longer than writeUTF allows
+        private static void writeJws(DataOutputStream out, String jws) throws IOException {
+            out.writeInt(jws.length());
+            for (int i = 0; i < jws.length(); i++) {
+                out.write(jws.charAt(i));
+            }
+        }
+
+        private static String readJws(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0 || length > MAX_JWS_LENGTH) {
+                throw new IOException("Invalid JWS length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (bytes[i] & 0xff);
+            }
+            return new String(chars);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * How a scan runs its checks.
+ */
+public enum ScanMode {
+
+    /**
+     * Runs every check and reports all reasons, use this to show why a device is seen as rooted.
+     */
+    FULL_REPORT,
+
+    /**
+     * Runs the checks cheapest first (see {@link CheckCost}) and stops as soon as one check detects root.
+     * Only the reasons of the checks that ran are reported.
+     */
+    FAIL_FAST
+}
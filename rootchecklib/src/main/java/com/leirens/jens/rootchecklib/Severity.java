@@ -0,0 +1,22 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * How strong an indication of root a {@link Finding} is, ordered from weakest to strongest.
+ */
+public enum Severity {
+
+    /**
+     * Unusual for a production device, but common on devices that are not rooted.
+     */
+    LOW,
+
+    /**
+     * The device is open to rooting, like an unlocked bootloader, but this is not root on its own.
+     */
+    MEDIUM,
+
+    /**
+     * The device is rooted or root is available.
+     */
+    HIGH
+}
@@ -0,0 +1,293 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps one sh process alive and runs commands in it, so the process based probes like mount and getprop
+ * do not pay a fork and exec for every command.
+ * Every command is followed by an echo of a random sentinel and the exit code, its output ends at that line.
+ * The shell is stopped after it was idle for a while and started again when a command needs it.
+ * When the shell died it is started again and the command is retried once,
+ * when a command does not finish before its deadline the shell is destroyed.
+ * Commands run one at a time.
+ */
+public class ShellSession {
+
+    private static final String TAG = "ShellSession";
+
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+    // sh returns this exit code when the command does not exist
+    private static final int EXIT_COMMAND_NOT_FOUND = 127;
+
+    private static ShellSession defaultSession;
+    private static ScheduledExecutorService idleTimer;
+
+    private final long timeoutMillis;
+    private final long idleTimeoutMillis;
+    private final String sentinel = "__ROOTCHECK_" + Long.toHexString(new Random().nextLong()) + "__";
+
+    private Process process;
+    private Writer stdin;
+    private InputStream stdoutPipe;
+    private BufferedReader stdout;
+    // set when the shell is closed, a reader that is still in readLine then closes stdout itself
+    private AtomicBoolean stdoutAbandoned;
+    private Future<Output> pendingOutput;
+    private long lastUsedNanos;
+    private boolean idleCheckScheduled;
+
+    /**
+     * @param timeoutMillis - how long a command may run before the shell is destroyed
+     * @param idleTimeoutMillis - how long the shell is kept alive without commands
+     */
+    public ShellSession(long timeoutMillis, long idleTimeoutMillis) {
+        if (timeoutMillis <= 0 || idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeouts must be positive");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * @return - the session that is shared by the library, with {@link ProcessRunner#DEFAULT_TIMEOUT_MILLIS}
+     * and {@link #DEFAULT_IDLE_TIMEOUT_MILLIS}
+     */
+    public static synchronized ShellSession getDefault() {
+        if (defaultSession == null) {
+            defaultSession = new ShellSession(ProcessRunner.DEFAULT_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+        }
+        return defaultSession;
+    }
+
+    private static synchronized ScheduledExecutorService getIdleTimer() {
+        if (idleTimer == null) {
+            idleTimer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "RootCheck-shell");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return idleTimer;
+    }
+
+    /**
+     * Runs a command in the shell and reads its standard output, the standard error is dropped
+     * @param commandLine - the command as it would be typed in sh, it can not read the standard input
+     * @return - the standard output of the command
+     * @throws ProcessTimeoutException - if the command did not finish before the deadline
+     * @throws InterruptedIOException - if the calling thread was interrupted while it waited
+     * @throws IOException - if the command does not exist or the shell could not be run
+     */
+    public synchronized String run(String commandLine) throws IOException {
+        try {
+            return runOnce(commandLine);
+        } catch (ShellDiedException e) {
+            RootCheckLog.w(TAG, "The shell died, starting a new one: " + e.getMessage());
+            close();
+            return runOnce(commandLine);
+        } finally {
+            lastUsedNanos = System.nanoTime();
+            scheduleIdleCheck();
+        }
+    }
+
+    /**
+     * Stops the shell now, the next command starts a new one
+     */
+    public synchronized void close() {
+        if (process == null) {
+            return;
+        }
+        process.destroy();
+        stdoutAbandoned.set(true);
+        if (pendingOutput != null) {
+            pendingOutput.cancel(true);
+        }
+        try {
+            stdin.close();
+        } catch (IOException e) {
+            // the shell is gone already
+        }
+        // not stdout, a reader that is blocked in readLine holds its lock until a child of the shell closes the pipe
+        try {
+            stdoutPipe.close();
+        } catch (IOException e) {
+            // the shell is gone already
+        }
+        process = null;
+        stdin = null;
+        stdoutPipe = null;
+        stdout = null;
+        stdoutAbandoned = null;
+        pendingOutput = null;
+    }
+
+    private String runOnce(String commandLine) throws IOException {
+        if (process == null) {
+            start();
+        }
+        try {
+            // the braces keep the standard input of the shell away from the command without a subshell
+            stdin.write("{\n" + commandLine + "\n} </dev/null\n__rootcheck_exit=$?\necho\necho " + sentinel
+                    + " $__rootcheck_exit\n");
+            stdin.flush();
+        } catch (IOException e) {
+            throw new ShellDiedException(e.toString());
+        }
+
+        final BufferedReader reader = stdout;
+        final AtomicBoolean abandoned = stdoutAbandoned;
+        pendingOutput = ProcessRunner.getReaders().submit(new Callable<Output>() {
+            @Override
+            public Output call() throws IOException {
+                try {
+                    return readUntilSentinel(reader);
+                } finally {
+                    if (abandoned.get()) {
+                        reader.close();
+                    }
+                }
+            }
+        });
+
+        Output result;
+        try {
+            result = pendingOutput.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            pendingOutput = null;
+        } catch (TimeoutException e) {
+            close();
+            throw new ProcessTimeoutException(commandLine, timeoutMillis);
+        } catch (InterruptedException e) {
+            // the output of the command is still in the pipe, the shell can not be used anymore
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(commandLine + " was interrupted");
+        } catch (ExecutionException e) {
+            // the reader stopped somewhere in the output, the shell can not be used anymore
+            close();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+
+        if (result.exitCode == EXIT_COMMAND_NOT_FOUND) {
+            throw new IOException(commandLine + ": not found");
+        }
+        return result.text;
+    }
+
+    private void start() throws IOException {
+        process = new ProcessBuilder().command("sh").start();
+        stdin = new OutputStreamWriter(process.getOutputStream());
+        stdoutPipe = process.getInputStream();
+        stdout = new BufferedReader(new InputStreamReader(stdoutPipe));
+        stdoutAbandoned = new AtomicBoolean();
+        // nobody reads the standard error, so it can not fill up and block the shell
+        stdin.write("exec 2>/dev/null\n");
+        stdin.flush();
+    }
+
+    private Output readUntilSentinel(BufferedReader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        // the echo before the sentinel adds one empty line, which is not part of the output
+        boolean emptyLinePending = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(sentinel)) {
+                return new Output(sb.toString(), parseExitCode(line));
+            }
+            if (emptyLinePending) {
+                sb.append('\n');
+            }
+            emptyLinePending = line.isEmpty();
+            if (!emptyLinePending) {
+                sb.append(line).append('\n');
+            }
+        }
+        throw new ShellDiedException("the shell exited");
+    }
+
+    private int parseExitCode(String line) {
+        try {
+            return Integer.parseInt(line.substring(sentinel.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void scheduleIdleCheck() {
+        if (idleCheckScheduled || process == null) {
+            return;
+        }
+        scheduleIdleCheck(idleTimeoutMillis);
+    }
+
+    /**
+     * One check is scheduled at a time, when the shell was used in the meantime the check moves itself
+     */
+    private void scheduleIdleCheck(long delayMillis) {
+        idleCheckScheduled = true;
+        getIdleTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkIdle();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void checkIdle() {
+        idleCheckScheduled = false;
+        if (process == null) {
+            return;
+        }
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastUsedNanos);
+        if (idleMillis >= idleTimeoutMillis) {
+            close();
+        } else {
+            scheduleIdleCheck(idleTimeoutMillis - idleMillis);
+        }
+    }
+
+    private static final class Output {
+
+        private final String text;
+        private final int exitCode;
+
+        private Output(String text, int exitCode) {
+            this.text = text;
+            this.exitCode = exitCode;
+        }
+    }
+
+    /**
+     * The shell exited or its pipes broke, the command may work in a new shell
+     */
+    private static final class ShellDiedException extends IOException {
+
+        private ShellDiedException(String message) {
+            super(message);
+        }
+    }
+}
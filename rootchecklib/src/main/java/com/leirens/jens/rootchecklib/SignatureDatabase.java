@@ -0,0 +1,423 @@
+package com.leirens.jens.rootchecklib;
+
+import android.content.Context;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The signatures the checks look for: root app packages, su directories, root binaries, protected mounts and
+ * dangerous properties. Every list is kept in a hash map, so a lookup costs the same for a few dozen or thousands
+ * of signatures.
+ * The database is loaded lazily from the newest valid file in the app storage or the assets, the lists in
+ * {@link Const} are the built-in defaults. A file only adds signatures to the built-in lists, it can not remove them.
+ * An update can be installed at runtime with {@link #install(Context, File)}.
+ * Every file is signed, a file is only used when it is signed with the key the app pinned with
+ * {@link #setTrustedKey(PublicKey)}, without that key only the built-in lists are used.
+ * See {@link SignatureDatabaseWriter} for the format.
+ */
+public class SignatureDatabase {
+
+    private static final String TAG = "SignatureDatabase";
+
+    static final byte[] MAGIC = {'R', 'C', 'S', 'D'};
+    static final int FORMAT_VERSION = 2;
+
+    /**
+     * The name of the database in the assets of the app and in its files directory
+     */
+    public static final String FILE_NAME = "rootcheck_signatures.db";
+
+    private static final int MAX_SIGNATURE_LENGTH = 1024;
+    private static final int MAX_FILE_SIZE = 4 * 1024 * 1024;
+
+    private static SignatureDatabase defaults;
+    private static volatile SignatureDatabase installed;
+    private static PublicKey trustedKey;
+
+    private final long version;
+    private final long fingerprint;
+    private final Map<SignatureSet, List<String>> lists = new EnumMap<>(SignatureSet.class);
+    // the position of every signature in its list, so a lookup is one hash lookup and matches can be reported in order
+    private final Map<SignatureSet, Map<String, Integer>> indexes = new EnumMap<>(SignatureSet.class);
+    private final PropertyRuleSet propertyRules;
+
+    private SignatureDatabase(long version, long fingerprint, Map<SignatureSet, String[]> sections) {
+        this.version = version;
+        this.fingerprint = fingerprint;
+        for (SignatureSet set : SignatureSet.values()) {
+            String[] entries = sections.get(set);
+            if (entries == null) {
+                entries = new String[0];
+            }
+            if (set == SignatureSet.PROTECTED_MOUNTS) {
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = entries[i].toLowerCase(Locale.US);
+                }
+            }
+            Map<String, Integer> index = new HashMap<>(entries.length * 2);
+            for (int i = 0; i < entries.length; i++) {
+                if (!index.containsKey(entries[i])) {
+                    index.put(entries[i], i);
+                }
+            }
+            lists.put(set, Collections.unmodifiableList(Arrays.asList(entries)));
+            indexes.put(set, index);
+        }
+        propertyRules = new PropertyRuleSet(lists.get(SignatureSet.DANGEROUS_PROPS));
+    }
+
+    /**
+     * @return - the database with the built-in lists of {@link Const}, version 0
+     */
+    public static synchronized SignatureDatabase getDefaults() {
+        if (defaults == null) {
+            Map<SignatureSet, String[]> sections = new EnumMap<>(SignatureSet.class);
+            sections.put(SignatureSet.ROOT_MANAGEMENT_APPS, Const.knownRootAppsPackages.clone());
+            sections.put(SignatureSet.DANGEROUS_APPS, Const.knownDangerousAppsPackages.clone());
+            sections.put(SignatureSet.ROOT_CLOAKING_APPS, Const.knownRootCloakingPackages.clone());
+            sections.put(SignatureSet.SU_PATHS, Const.suPaths.clone());
+            sections.put(SignatureSet.ROOT_BINARIES, Const.rootBinaries.clone());
+            sections.put(SignatureSet.PROTECTED_MOUNTS, Const.pathsThatShouldNotBeWrtiable.clone());
+            sections.put(SignatureSet.DANGEROUS_PROPS, Const.dangerousPropertyRules.clone());
+            defaults = new SignatureDatabase(0, 0, sections);
+        }
+        return defaults;
+    }
+
+    /**
+     * Pins the key the database files of the app are signed with, call it before the first scan
+     * @param key - the RSA or EC public key of the app, see {@link SignatureDatabaseWriter#toByteArray(java.security.PrivateKey)}
+     * @throws IllegalStateException - if another key is pinned already
+     */
+    public static synchronized void setTrustedKey(PublicKey key) {
+        if (trustedKey != null && !trustedKey.equals(key)) {
+            throw new IllegalStateException("Another key is pinned already");
+        }
+        if (trustedKey == null) {
+            trustedKey = key;
+            // a database that was loaded without the key only has the built-in lists
+            installed = null;
+        }
+    }
+
+    private static synchronized PublicKey getTrustedKey() {
+        return trustedKey;
+    }
+
+    /**
+     * Loads the database the first time it is called, this reads files and should not be called from the main thread
+     * @param context - any context, used for the files directory and the assets
+     * @return - the newest valid database of the app storage, the assets and the defaults
+     */
+    public static SignatureDatabase get(Context context) {
+        SignatureDatabase database = installed;
+        if (database == null) {
+            synchronized (SignatureDatabase.class) {
+                database = installed;
+                if (database == null) {
+                    database = load(context);
+                    installed = database;
+                }
+            }
+        }
+        return database;
+    }
+
+    private static SignatureDatabase load(Context context) {
+        SignatureDatabase database = getDefaults();
+        PublicKey key = getTrustedKey();
+        if (key == null) {
+            RootCheckLog.i(TAG, "No trusted key, using the built-in lists");
+            return database;
+        }
+
+        InputStream asset = null;
+        try {
+            asset = context.getAssets().open(FILE_NAME);
+            database = newest(database, read(asset, key));
+        } catch (IOException e) {
+            // no database in the assets, which is fine
+        } finally {
+            closeQuietly(asset);
+        }
+
+        File file = getFile(context);
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                // the stored file is checked again on every load, not only when it is installed
+                database = newest(database, read(in, key));
+            } catch (IOException e) {
+                RootCheckLog.e(TAG, "Ignoring the stored database: " + e);
+            } finally {
+                closeQuietly(in);
+            }
+        }
+        RootCheckLog.i(TAG, "Using version " + database.version);
+        return database;
+    }
+
+    private static SignatureDatabase newest(SignatureDatabase a, SignatureDatabase b) {
+        return b.version > a.version ? b : a;
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Checks a downloaded database, stores it in the app storage and uses it for the next scans
+     * @param context - any context, used for the files directory
+     * @param downloaded - the database file
+     * @return - the database that is used now
+     * @throws IOException - if no key is pinned, the file is invalid, is not signed with the pinned key or is not
+     * newer than the current database
+     */
+    public static SignatureDatabase install(Context context, File downloaded) throws IOException {
+        PublicKey key = getTrustedKey();
+        if (key == null) {
+            throw new IOException("No trusted key, see setTrustedKey");
+        }
+        byte[] bytes;
+        InputStream in = new FileInputStream(downloaded);
+        try {
+            bytes = readAll(in);
+        } finally {
+            closeQuietly(in);
+        }
+        SignatureDatabase database = parse(bytes, key);
+
+        synchronized (SignatureDatabase.class) {
+            SignatureDatabase current = get(context);
+            if (database.version <= current.version) {
+                throw new IOException("Version " + database.version + " is not newer than " + current.version);
+            }
+            // write next to the database and rename it, so a crash never leaves a partial database behind
+            File file = getFile(context);
+            File temp = new File(file.getPath() + ".tmp");
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(bytes);
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Could not store the database");
+            }
+            installed = database;
+        }
+        RootCheckLog.i(TAG, "Installed version " + database.version);
+        return database;
+    }
+
+    /**
+     * @param in - a database file, it is not closed
+     * @param key - the key the file has to be signed with
+     * @return - the database, its lists hold the built-in lists and the signatures of the file
+     * @throws IOException - if the file can not be read, is not a database or is not signed with the key
+     */
+    public static SignatureDatabase read(InputStream in, PublicKey key) throws IOException {
+        return parse(readAll(in), key);
+    }
+
+    private static SignatureDatabase parse(byte[] bytes, PublicKey key) throws IOException {
+        // the file ends with the signature and the length of the signature
+        if (bytes.length < MAGIC.length + 4) {
+            throw new IOException("Not a signature database");
+        }
+        int signatureLength = ((bytes[bytes.length - 4] & 0xff) << 24) | ((bytes[bytes.length - 3] & 0xff) << 16)
+                | ((bytes[bytes.length - 2] & 0xff) << 8) | (bytes[bytes.length - 1] & 0xff);
+        if (signatureLength <= 0 || signatureLength > MAX_SIGNATURE_LENGTH
+                || signatureLength > bytes.length - MAGIC.length - 4) {
+            throw new IOException("Not a signed signature database");
+        }
+        int contentLength = bytes.length - 4 - signatureLength;
+        if (!verify(key, bytes, contentLength, signatureLength)) {
+            throw new IOException("The database is not signed with the trusted key");
+        }
+        byte[] digest = sha256(bytes, 0, contentLength);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, contentLength));
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a signature database");
+        }
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + formatVersion);
+        }
+        long version = in.readLong();
+        int sectionCount = in.readInt();
+        Map<SignatureSet, String[]> sections = new EnumMap<>(SignatureSet.class);
+        for (int s = 0; s < sectionCount; s++) {
+            String name = in.readUTF();
+            int count = in.readInt();
+            if (count < 0 || count > contentLength) {
+                throw new IOException("Invalid section " + name);
+            }
+            String[] entries = new String[count];
+            for (int i = 0; i < count; i++) {
+                entries[i] = in.readUTF();
+            }
+            SignatureSet set = SignatureSet.fromSectionName(name);
+            // sections of newer libraries are skipped
+            if (set != null) {
+                sections.put(set, entries);
+            }
+        }
+        // the file adds to the built-in lists, so even an empty or missing section keeps every built-in signature
+        for (SignatureSet set : SignatureSet.values()) {
+            Set<String> merged = new LinkedHashSet<>(getDefaults().get(set));
+            String[] entries = sections.get(set);
+            if (entries != null) {
+                merged.addAll(Arrays.asList(entries));
+            }
+            sections.put(set, merged.toArray(new String[merged.size()]));
+        }
+        if (sections.get(SignatureSet.ROOT_BINARIES).length > 64) {
+            throw new IOException("More than 64 root binaries");
+        }
+
+        long fingerprint = 0;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (digest[i] & 0xff);
+        }
+        return new SignatureDatabase(version, fingerprint, sections);
+    }
+
+    private static boolean verify(PublicKey key, byte[] bytes, int contentLength, int signatureLength)
+            throws IOException {
+        String algorithm;
+        if ("RSA".equals(key.getAlgorithm())) {
+            algorithm = "SHA256withRSA";
+        } else if ("EC".equals(key.getAlgorithm())) {
+            algorithm = "SHA256withECDSA";
+        } else {
+            throw new IOException("Unsupported key " + key.getAlgorithm());
+        }
+        try {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initVerify(key);
+            signature.update(bytes, 0, contentLength);
+            return signature.verify(bytes, contentLength, signatureLength);
+        } catch (GeneralSecurityException e) {
+            // a malformed signature throws instead of returning false
+            RootCheckLog.w(TAG, "Could not verify the database: " + e);
+            return false;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_FILE_SIZE) {
+                throw new IOException("The database is too large");
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] sha256(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes, offset, length);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * @return - the version of the database, 0 for the built-in defaults
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return - changes when the contents of the database change, part of the fingerprints of the checks that use it
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @param set - a list of the database
+     * @return - the signatures in the order they are checked and reported
+     */
+    public List<String> get(SignatureSet set) {
+        return lists.get(set);
+    }
+
+    /**
+     * @param set - a list of the database
+     * @param value - the value to look up
+     * @return - true if the value is in the list
+     */
+    public boolean contains(SignatureSet set, String value) {
+        return indexes.get(set).containsKey(value);
+    }
+
+    /**
+     * @return - the {@link SignatureSet#DANGEROUS_PROPS} as rules, grouped by property
+     */
+    public PropertyRuleSet getPropertyRules() {
+        return propertyRules;
+    }
+
+    /**
+     * @param set - a list of the database
+     * @return - the signatures as a set, for lookups
+     */
+    public Set<String> asSet(SignatureSet set) {
+        return Collections.unmodifiableSet(indexes.get(set).keySet());
+    }
+
+    /**
+     * @param set - a list of the database
+     * @param value - the value to look up
+     * @return - the position of the value in the list, -1 if it is not in the list
+     */
+    public int indexOf(SignatureSet set, String value) {
+        Integer index = indexes.get(set).get(value);
+        return index != null ? index : -1;
+    }
+}
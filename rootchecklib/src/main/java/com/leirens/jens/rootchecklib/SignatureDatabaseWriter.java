@@ -0,0 +1,92 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a {@link SignatureDatabase} file, for example to ship an updated database in the assets or on a server.
+ * The file is:
+ * <pre>
+ * "RCSD", format version (int), database version (long), section count (int),
+ * per section: name (UTF), entry count (int), entries (UTF),
+ * SHA256withRSA or SHA256withECDSA signature of everything before it, signature length (int)
+ * </pre>
+ * The key is the key of the app, its public key is pinned with {@link SignatureDatabase#setTrustedKey}.
+ * Keep the private key off the device, on the machine that publishes the database.
+ */
+public class SignatureDatabaseWriter {
+
+    private final long version;
+    private final Map<SignatureSet, List<String>> sections = new EnumMap<>(SignatureSet.class);
+
+    /**
+     * @param version - the version of the database, an installed database is only replaced by a newer version
+     */
+    public SignatureDatabaseWriter(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @param set - the list to add to
+     * @param entries - the signatures, in the order they are checked and reported
+     * @return - this writer
+     */
+    public SignatureDatabaseWriter add(SignatureSet set, String... entries) {
+        List<String> section = sections.get(set);
+        if (section == null) {
+            section = new ArrayList<>();
+            sections.put(set, section);
+        }
+        section.addAll(Arrays.asList(entries));
+        return this;
+    }
+
+    /**
+     * @param key - the RSA or EC private key the database is signed with
+     * @return - the database file
+     */
+    public byte[] toByteArray(PrivateKey key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(SignatureDatabase.MAGIC);
+        out.writeInt(SignatureDatabase.FORMAT_VERSION);
+        out.writeLong(version);
+        out.writeInt(sections.size());
+        for (Map.Entry<SignatureSet, List<String>> section : sections.entrySet()) {
+            out.writeUTF(section.getKey().getSectionName());
+            out.writeInt(section.getValue().size());
+            for (String entry : section.getValue()) {
+                out.writeUTF(entry);
+            }
+        }
+        out.flush();
+        byte[] signature;
+        try {
+            Signature signer = Signature.getInstance("EC".equals(key.getAlgorithm())
+                    ? "SHA256withECDSA" : "SHA256withRSA");
+            signer.initSign(key);
+            signer.update(bytes.toByteArray());
+            signature = signer.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+        out.write(signature);
+        out.writeInt(signature.length);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public void writeTo(OutputStream out, PrivateKey key) throws IOException {
+        out.write(toByteArray(key));
+    }
+}
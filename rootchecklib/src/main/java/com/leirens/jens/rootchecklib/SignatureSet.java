@@ -0,0 +1,54 @@
+package com.leirens.jens.rootchecklib;
+
+/**
+ * The lists of a {@link SignatureDatabase}
+ */
+public enum SignatureSet {
+
+    ROOT_MANAGEMENT_APPS("root_management_apps"),
+    DANGEROUS_APPS("dangerous_apps"),
+    ROOT_CLOAKING_APPS("root_cloaking_apps"),
+
+    /**
+     * The directories that are searched for root binaries, with a trailing slash
+     */
+    SU_PATHS("su_paths"),
+
+    /**
+     * The names of the root binaries, at most 64 because they are the candidates of the {@link FileSystemSnapshot}
+     */
+    ROOT_BINARIES("root_binaries"),
+
+    /**
+     * The mount points that should never be mounted read-write, in lower case
+     */
+    PROTECTED_MOUNTS("protected_mounts"),
+
+    /**
+     * System properties with the value that should not be set on a production device, as {@link PropertyRule}s
+     * like "ro.secure=0" or "medium ro.boot.verifiedbootstate!=green"
+     */
+    DANGEROUS_PROPS("dangerous_props");
+
+    private final String sectionName;
+
+    SignatureSet(String sectionName) {
+        this.sectionName = sectionName;
+    }
+
+    /**
+     * @return - the name of the section in the database file, which never changes
+     */
+    public String getSectionName() {
+        return sectionName;
+    }
+
+    static SignatureSet fromSectionName(String sectionName) {
+        for (SignatureSet set : values()) {
+            if (set.sectionName.equals(sectionName)) {
+                return set;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,206 @@
+package com.leirens.jens.rootchecklib;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads system properties like ro.debuggable.
+ * The properties are read in-process through the hidden android.os.SystemProperties api,
+ * only when that api is not available the getprop command is run in a shell.
+ * The output of getprop is kept for the read-only properties for {@link #SNAPSHOT_MAX_AGE_MILLIS},
+ * the other properties can change at any time and are read again on every call.
+ * A getprop that failed or timed out is not kept, it is run again after {@link #RETRY_AFTER_FAILURE_MILLIS}.
+ */
+public abstract class SystemPropertyReader {
+
+    private static final String TAG = "SystemPropertyReader";
+
+    /**
+     * How long a reader waits before it runs getprop again after it failed
+     */
+    public static final long RETRY_AFTER_FAILURE_MILLIS = 30000;
+
+    /**
+     * How long the output of getprop is used for the read-only properties, one of them may still be set after it
+     */
+    public static final long SNAPSHOT_MAX_AGE_MILLIS = 10 * 60 * 1000;
+
+    private static SystemPropertyReader instance;
+    private static ReflectionReader reflectionReader;
+    private static boolean reflectionLookedUp;
+
+    /**
+     * @param key - the name of the property
+     * @return - the value of the property or null if it is not set
+     */
+    public abstract String get(String key);
+
+    /**
+     * @return - the reader that is shared by the library, it runs getprop in {@link ShellSession#getDefault()}
+     */
+    public static synchronized SystemPropertyReader getDefault() {
+        if (instance == null) {
+            instance = create(ShellSession.getDefault());
+        }
+        return instance;
+    }
+
+    /**
+     * @param shell - runs getprop when the hidden api is not available
+     * @return - the in-process reader if the hidden api is available, a reader that runs getprop in the shell otherwise
+     */
+    public static synchronized SystemPropertyReader create(ShellSession shell) {
+        if (!reflectionLookedUp) {
+            reflectionReader = ReflectionReader.create();
+            reflectionLookedUp = true;
+        }
+        return reflectionReader != null ? reflectionReader : new GetpropReader(shell);
+    }
+
+    /**
+     * Calls android.os.SystemProperties.get(String), which reads the shared property area without a binder call
+     */
+    private static final class ReflectionReader extends SystemPropertyReader {
+
+        private final Method getMethod;
+
+        private ReflectionReader(Method getMethod) {
+            this.getMethod = getMethod;
+        }
+
+        static ReflectionReader create() {
+            try {
+                Class<?> systemProperties = Class.forName("android.os.SystemProperties");
+                return new ReflectionReader(systemProperties.getMethod("get", String.class));
+            } catch (ClassNotFoundException | NoSuchMethodException | RuntimeException e) {
+                RootCheckLog.e(TAG, "SystemProperties is not available, falling back to getprop: " + e);
+                return null;
+            }
+        }
+
+        @Override
+        public String get(String key) {
+            try {
+                String value = (String) getMethod.invoke(null, key);
+                // SystemProperties returns an empty string for properties that are not set
+                return value == null || value.isEmpty() ? null : value;
+            } catch (Exception e) {
+                RootCheckLog.e(TAG, "Could not read " + key + ": " + e);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Runs getprop once and parses its "[key]: [value]" lines into a snapshot for the read-only properties,
+     * which are set once. Any other property can change at any time, so it is read with its own getprop every time.
+     */
+    private static final class GetpropReader extends SystemPropertyReader {
+
+        private static final String READ_ONLY_PREFIX = "ro.";
+
+        private final ShellSession shell;
+        private Map<String, String> properties;
+        private long readAtNanos;
+        private long failedAtNanos;
+        private boolean failed;
+
+        GetpropReader(ShellSession shell) {
+            this.shell = shell;
+        }
+
+        @Override
+        public synchronized String get(String key) {
+            // after a failure the other properties of the scan do not wait for getprop again
+            if (failed && System.nanoTime() - failedAtNanos
+                    < TimeUnit.MILLISECONDS.toNanos(RETRY_AFTER_FAILURE_MILLIS)) {
+                return null;
+            }
+            if (!key.startsWith(READ_ONLY_PREFIX)) {
+                return readProperty(key);
+            }
+            if (properties == null || System.nanoTime() - readAtNanos
+                    >= TimeUnit.MILLISECONDS.toNanos(SNAPSHOT_MAX_AGE_MILLIS)) {
+                Map<String, String> read = readProperties();
+                if (read == null) {
+                    return null;
+                }
+                properties = read;
+                readAtNanos = System.nanoTime();
+            }
+            return properties.get(key);
+        }
+
+        /**
+         * @return - the value of the property, null if it is not set or getprop failed
+         */
+        private String readProperty(String key) {
+            if (!isValidKey(key)) {
+                return null;
+            }
+            try {
+                String value = shell.run("getprop " + key).trim();
+                failed = false;
+                return value.isEmpty() ? null : value;
+            } catch (IOException e) {
+                onFailure(e);
+                return null;
+            }
+        }
+
+        /**
+         * @return - the properties, null if getprop failed
+         */
+        private Map<String, String> readProperties() {
+            Map<String, String> result = new HashMap<>();
+            try {
+                String propVal = shell.run("getprop");
+                for (String line : propVal.split("\n")) {
+                    parseLine(line, result);
+                }
+            } catch (IOException e) {
+                onFailure(e);
+                return null;
+            }
+            failed = false;
+            return result;
+        }
+
+        private void onFailure(IOException e) {
+            RootCheckLog.e(TAG, "Could not run getprop: " + e);
+            failed = true;
+            failedAtNanos = System.nanoTime();
+        }
+
+        /**
+         * The key is part of a command line, so it may only hold the characters of a property name
+         */
+        static boolean isValidKey(String key) {
+            if (key.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(i);
+                if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                        || c == '.' || c == '_' || c == '-' || c == ':' || c == '@')) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static void parseLine(String line, Map<String, String> result) {
+            int keyEnd = line.indexOf("]: [");
+            if (!line.startsWith("[") || keyEnd < 0 || !line.endsWith("]")) {
+                return;
+            }
+            String value = line.substring(keyEnd + 4, line.length() - 1);
+            if (!value.isEmpty()) {
+                result.put(line.substring(1, keyEnd), value);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.leirens.jens.rootchecklib;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps every check in an android.os.Trace section, so the checks show up in systrace and Perfetto.
+ * The sections are named "RootCheck:" followed by the id of the check. Does nothing below API 18.
+ */
+public class TraceCheckListener implements CheckListener {
+
+    private static final String SECTION_PREFIX = "RootCheck:";
+    // Trace fails on section names that are longer than this
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private final ConcurrentMap<String, String> sectionNames = new ConcurrentHashMap<>();
+
+    @Override
+    public void onCheckStarted(String checkId) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(sectionName(checkId));
+        }
+    }
+
+    @Override
+    public void onCheckFinished(String checkId, CheckOutcome outcome, long durationNanos, Throwable error) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    private String sectionName(String checkId) {
+        String name = sectionNames.get(checkId);
+        if (name == null) {
+            name = SECTION_PREFIX + checkId;
+            if (name.length() > MAX_SECTION_NAME_LENGTH) {
+                name = name.substring(0, MAX_SECTION_NAME_LENGTH);
+            }
+            sectionNames.put(checkId, name);
+        }
+        return name;
+    }
+}
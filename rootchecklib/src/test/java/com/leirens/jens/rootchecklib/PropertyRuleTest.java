@@ -0,0 +1,107 @@
+package com.leirens.jens.rootchecklib;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PropertyRuleTest {
+
+    @Test
+    public void parsesAnEqualsRuleWithTheDefaultSeverity() {
+        PropertyRule rule = PropertyRule.parse("ro.secure=0");
+        assertEquals("ro.secure", rule.getKey());
+        assertEquals("0", rule.getValue());
+        assertFalse(rule.isNegated());
+        assertEquals(Severity.HIGH, rule.getSeverity());
+        assertTrue(rule.matches("0"));
+        assertFalse(rule.matches("1"));
+        assertFalse(rule.matches(null));
+    }
+
+    @Test
+    public void parsesANegatedRuleWithASeverity() {
+        PropertyRule rule = PropertyRule.parse("medium ro.boot.verifiedbootstate!=green");
+        assertEquals("ro.boot.verifiedbootstate", rule.getKey());
+        assertEquals("green", rule.getValue());
+        assertTrue(rule.isNegated());
+        assertEquals(Severity.MEDIUM, rule.getSeverity());
+        assertTrue(rule.matches("orange"));
+        assertFalse(rule.matches("green"));
+        // a property that is not set is not a finding
+        assertFalse(rule.matches(null));
+    }
+
+    @Test
+    public void severityIsCaseInsensitive() {
+        assertEquals(Severity.LOW, PropertyRule.parse("LOW ro.debuggable=1").getSeverity());
+        assertEquals(Severity.LOW, PropertyRule.parse("Low ro.debuggable=1").getSeverity());
+    }
+
+    @Test
+    public void valueMayContainSpacesAndEquals() {
+        PropertyRule rule = PropertyRule.parse("ro.build.description=a b=c");
+        assertEquals("ro.build.description", rule.getKey());
+        assertEquals("a b=c", rule.getValue());
+        assertEquals(Severity.HIGH, rule.getSeverity());
+
+        rule = PropertyRule.parse("low ro.build.description!=a b");
+        assertEquals("a b", rule.getValue());
+        assertEquals(Severity.LOW, rule.getSeverity());
+    }
+
+    @Test
+    public void emptyValueMatchesOnlyAnEmptyValue() {
+        PropertyRule rule = PropertyRule.parse("ro.build.selinux=");
+        assertEquals("", rule.getValue());
+        assertTrue(rule.matches(""));
+        assertFalse(rule.matches("1"));
+    }
+
+    @Test
+    public void toStringCanBeParsedAgain() {
+        for (String text : Arrays.asList("ro.secure=0", "medium ro.boot.verifiedbootstate!=green", "low a=b c")) {
+            PropertyRule rule = PropertyRule.parse(text);
+            PropertyRule again = PropertyRule.parse(rule.toString());
+            assertEquals(rule.getKey(), again.getKey());
+            assertEquals(rule.getValue(), again.getValue());
+            assertEquals(rule.isNegated(), again.isNegated());
+            assertEquals(rule.getSeverity(), again.getSeverity());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARuleWithoutEquals() {
+        PropertyRule.parse("ro.secure");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARuleWithoutKey() {
+        PropertyRule.parse("=0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsANegatedRuleWithoutKey() {
+        PropertyRule.parse("!=0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnUnknownSeverity() {
+        PropertyRule.parse("severe ro.secure=0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsASeverityWithoutRule() {
+        PropertyRule.parse("high ");
+    }
+
+    @Test
+    public void ruleSetSkipsInvalidRulesAndGroupsByKey() {
+        PropertyRuleSet rules = new PropertyRuleSet(Arrays.asList(
+                "ro.debuggable=1", "invalid", "low ro.debuggable!=0", "service.adb.root=1", "severe x=1"));
+        assertEquals(3, rules.size());
+    }
+}
@@ -0,0 +1,215 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AttestationSchedulerTest {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private FakeClock clock;
+    private FakeClient client;
+    private AttestationScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(100 * DAY_MILLIS + 1000);
+        client = new FakeClient();
+        scheduler = new AttestationScheduler(client, clock)
+                .setRateLimit(2, 1000)
+                .setDailyQuota(1000)
+                .setBackoff(100, 1000)
+                .setCircuitBreaker(3, 5000);
+    }
+
+    @Test
+    public void bucketRefillsOneTokenPerInterval() {
+        assertNull(attest());
+        assertNull(attest());
+        assertThrottled(attest(), AttestationThrottledException.Reason.RATE_LIMITED);
+        assertEquals(2, client.calls);
+        assertEquals(1000, scheduler.getRetryAfterMillis());
+
+        clock.now += 500;
+        assertEquals(0, scheduler.getAvailableTokens());
+        assertEquals(500, scheduler.getRetryAfterMillis());
+
+        clock.now += 500;
+        assertEquals(1, scheduler.getAvailableTokens());
+        assertNull(attest());
+        assertThrottled(attest(), AttestationThrottledException.Reason.RATE_LIMITED);
+
+        // the bucket never holds more than the burst
+        clock.now += 10000;
+        assertEquals(2, scheduler.getAvailableTokens());
+        assertEquals(3, client.calls);
+        assertEquals(2, scheduler.getThrottledCount());
+    }
+
+    @Test
+    public void dailyQuotaRollsOverAtUtcMidnight() {
+        scheduler.setDailyQuota(2).setRateLimit(100, 1);
+        assertNull(attest());
+        assertNull(attest());
+        assertEquals(0, scheduler.getRemainingDailyQuota());
+        assertThrottled(attest(), AttestationThrottledException.Reason.DAILY_QUOTA);
+        assertEquals(DAY_MILLIS - 1000, scheduler.getRetryAfterMillis());
+
+        clock.now = 101 * DAY_MILLIS - 1;
+        assertThrottled(attest(), AttestationThrottledException.Reason.DAILY_QUOTA);
+
+        clock.now = 101 * DAY_MILLIS;
+        assertEquals(2, scheduler.getRemainingDailyQuota());
+        assertNull(attest());
+        assertEquals(1, scheduler.getRemainingDailyQuota());
+        assertEquals(3, client.calls);
+    }
+
+    @Test
+    public void backoffDoublesWithinJitterBounds() {
+        scheduler.setRateLimit(100, 1).setCircuitBreaker(100, 5000);
+        client.error = new IOException("network");
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (long backoff : expected) {
+            attest();
+            long retryAfter = scheduler.getRetryAfterMillis();
+            // equal jitter, at least half of the backoff and at most all of it
+            assertTrue("backoff " + retryAfter + " for " + backoff, retryAfter >= backoff / 2 && retryAfter <= backoff);
+            assertThrottled(attest(), AttestationThrottledException.Reason.BACKOFF);
+            clock.now += retryAfter;
+        }
+        assertEquals(expected.length, client.calls);
+
+        client.error = null;
+        assertNull(attest());
+        assertEquals(0, scheduler.getRetryAfterMillis());
+    }
+
+    @Test
+    public void halfOpenTrialThatSucceedsClosesTheCircuit() {
+        openCircuit();
+        clock.now += 5000;
+        assertEquals(AttestationScheduler.CircuitState.HALF_OPEN, scheduler.getCircuitState());
+
+        // the trial is still in flight, nothing else is sent
+        client.hold = true;
+        assertNull(attest());
+        assertThrottled(attest(), AttestationThrottledException.Reason.CIRCUIT_OPEN);
+        int calls = client.calls;
+
+        client.release(null);
+        assertEquals(AttestationScheduler.CircuitState.CLOSED, scheduler.getCircuitState());
+        assertEquals(0, scheduler.getRetryAfterMillis());
+        client.hold = false;
+        client.error = null;
+        assertNull(attest());
+        assertEquals(calls + 1, client.calls);
+    }
+
+    @Test
+    public void halfOpenTrialThatFailsReopensTheCircuit() {
+        openCircuit();
+        clock.now += 5000;
+        assertEquals(AttestationScheduler.CircuitState.HALF_OPEN, scheduler.getCircuitState());
+
+        int calls = client.calls;
+        attest();
+        assertEquals(calls + 1, client.calls);
+        assertEquals(AttestationScheduler.CircuitState.OPEN, scheduler.getCircuitState());
+        assertThrottled(attest(), AttestationThrottledException.Reason.CIRCUIT_OPEN);
+        assertEquals(5000, scheduler.getRetryAfterMillis());
+        assertEquals(calls + 1, client.calls);
+    }
+
+    private void openCircuit() {
+        scheduler.setRateLimit(100, 1);
+        client.error = new IOException("network");
+        for (int i = 0; i < 3; i++) {
+            // wait out the backoff of the previous failure
+            clock.now += scheduler.getRetryAfterMillis();
+            attest();
+        }
+        assertEquals(AttestationScheduler.CircuitState.OPEN, scheduler.getCircuitState());
+        assertThrottled(attest(), AttestationThrottledException.Reason.CIRCUIT_OPEN);
+        assertEquals(3, client.calls);
+    }
+
+    /**
+     * @return - the exception the callback got, null if the attestation succeeded or is still in flight
+     */
+    private Exception attest() {
+        final Exception[] failure = new Exception[1];
+        scheduler.attest(new byte[16], "key", new AttestationClient.Callback() {
+            @Override
+            public void onSuccess(String jwsResult) {
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                failure[0] = e;
+            }
+        });
+        return failure[0];
+    }
+
+    private static void assertThrottled(Exception failure, AttestationThrottledException.Reason reason) {
+        assertTrue("expected " + reason + " but got " + failure, failure instanceof AttestationThrottledException);
+        assertEquals(reason, ((AttestationThrottledException) failure).getReason());
+    }
+
+    private static final class FakeClock implements AttestationScheduler.Clock {
+
+        long now;
+
+        FakeClock(long now) {
+            this.now = now;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return now;
+        }
+    }
+
+    /**
+     * Answers right away with the error, or a result when there is no error, or holds the callbacks until released
+     */
+    private static final class FakeClient implements AttestationClient {
+
+        int calls;
+        Exception error;
+        boolean hold;
+        final List<Callback> held = new ArrayList<>();
+
+        @Override
+        public void attest(byte[] nonce, String apiKey, Callback callback) {
+            calls++;
+            if (hold) {
+                held.add(callback);
+            } else if (error != null) {
+                callback.onFailure(error);
+            } else {
+                callback.onSuccess("jws");
+            }
+        }
+
+        void release(Exception releaseError) {
+            for (Callback callback : held) {
+                if (releaseError != null) {
+                    callback.onFailure(releaseError);
+                } else {
+                    callback.onSuccess("jws");
+                }
+            }
+            held.clear();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.leirens.jens.rootchecklib.SafetyNet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JwsDecoderTest {
+
+    private static final String HEADER = "{\"alg\":\"RS256\",\"x5c\":[\"leaf\",\"root\"]}";
+
+    private JwsDecoder decoder;
+
+    @Before
+    public void setUp() {
+        decoder = new JwsDecoder();
+    }
+
+    @Test
+    public void decodesPaddedAndUnpaddedBase64() throws IOException {
+        assertArrayEquals(new byte[]{'a'}, decode("YQ=="));
+        assertArrayEquals(new byte[]{'a'}, decode("YQ"));
+        assertArrayEquals(new byte[]{'a', 'b'}, decode("YWI="));
+        assertArrayEquals(new byte[]{'a', 'b'}, decode("YWI"));
+        assertArrayEquals(new byte[]{'a', 'b', 'c'}, decode("YWJj"));
+        assertArrayEquals(new byte[0], decode(""));
+    }
+
+    @Test
+    public void decodesBothAlphabets() throws IOException {
+        byte[] bytes = {(byte) 0xfb, (byte) 0xff, (byte) 0xbf};
+        assertArrayEquals(bytes, decode("-_-_"));
+        assertArrayEquals(bytes, decode("+/+/"));
+    }
+
+    @Test
+    public void rejectsCharactersOutsideTheAlphabet() {
+        assertDecodeFails("YW.j");
+        assertDecodeFails("YW j");
+        assertDecodeFails("YW\u00e9j");
+    }
+
+    @Test
+    public void rejectsTruncatedBase64() {
+        assertDecodeFails("YWJjZ");
+    }
+
+    @Test
+    public void decodesThePayload() throws IOException {
+        SafetyNetResponse response = decoder.decode(jws("{\"nonce\":\"bm9uY2U=\",\"timestampMs\":1530000000000,"
+                + "\"apkPackageName\":\"com.example.app\",\"apkCertificateDigestSha256\":[\"one\",\"two\"],"
+                + "\"apkDigestSha256\":\"digest\",\"ctsProfileMatch\":true,\"basicIntegrity\":false,"
+                + "\"advice\":\"RESTORE_TO_FACTORY_ROM\"}"));
+        assertEquals("bm9uY2U=", response.getNonce());
+        assertEquals(1530000000000L, response.getTimestampMs());
+        assertEquals("com.example.app", response.getApkPackageName());
+        assertArrayEquals(new String[]{"one", "two"}, response.getApkCertificateDigestSha256());
+        assertEquals("digest", response.getApkDigestSha256());
+        assertTrue(response.isCtsProfileMatch());
+        assertFalse(response.isBasicIntegrity());
+        assertEquals("RESTORE_TO_FACTORY_ROM", response.getAdvice());
+    }
+
+    @Test
+    public void decodesEscapedStrings() throws IOException {
+        SafetyNetResponse response = decoder.decode(jws(
+                "{\"apkPackageName\":\"a\\\"b\\\\c\\/d\\n\\t\\u00e9\\u20ac\",\"advice\":\"\u00e9\u20ac\"}"));
+        assertEquals("a\"b\\c/d\n\t\u00e9\u20ac", response.getApkPackageName());
+        assertEquals("\u00e9\u20ac", response.getAdvice());
+    }
+
+    @Test
+    public void skipsUnknownAndNestedFields() throws IOException {
+        SafetyNetResponse response = decoder.decode(jws("{ \"unknown\" : 1.5e3 ,"
+                + "\"nested\":{\"apkPackageName\":\"inner\",\"list\":[1,{\"a\":\"}]\"},[]],\"flag\":true},"
+                + "\"esc\\\"aped\":\"x\\\"}\",\"empty\":null,"
+                + "\"apkPackageName\":\"outer\",\"ctsProfileMatch\":true,\"trailing\":[]}"));
+        assertEquals("outer", response.getApkPackageName());
+        assertTrue(response.isCtsProfileMatch());
+    }
+
+    @Test
+    public void decodesAnEmptyPayload() throws IOException {
+        SafetyNetResponse response = decoder.decode(jws(" { } "));
+        assertNull(response.getNonce());
+        assertNull(response.getApkDigestSha256());
+        assertEquals(0, response.getTimestampMs());
+        assertFalse(response.isCtsProfileMatch());
+    }
+
+    @Test
+    public void decodesTheHeader() throws IOException {
+        JwsDecoder.Header header = decoder.decodeHeader(jws("{}"));
+        assertEquals("RS256", header.algorithm);
+        assertArrayEquals(new String[]{"leaf", "root"}, header.certificateChain);
+    }
+
+    @Test
+    public void rejectsTokensWithoutThreeSegments() {
+        String jws = jws("{\"ctsProfileMatch\":true}");
+        assertPayloadFails(jws.substring(0, jws.lastIndexOf('.')));
+        assertPayloadFails(jws.substring(0, jws.indexOf('.')));
+        assertPayloadFails(jws + ".extra");
+        assertPayloadFails(null);
+    }
+
+    @Test
+    public void rejectsTruncatedPayloads() {
+        String payload = "{\"apkPackageName\":\"com.example.app\",\"ctsProfileMatch\":true}";
+        for (int length = 0; length < payload.length(); length++) {
+            assertPayloadFails(jws(payload.substring(0, length)));
+        }
+        assertPayloadFails(jws("{\"apkPackageName\":\"\\u00e"));
+        assertPayloadFails(jws("{\"nested\":{\"a\":[1,2}"));
+    }
+
+    @Test
+    public void rejectsMalformedValues() {
+        assertPayloadFails(jws("{\"ctsProfileMatch\":\"true\"}"));
+        assertPayloadFails(jws("{\"timestampMs\":\"now\"}"));
+        assertPayloadFails(jws("{\"advice\":\"\\x\"}"));
+        assertPayloadFails(jws("{\"advice\":\"a\"\"b\":1}"));
+    }
+
+    private static byte[] decode(String text) throws IOException {
+        return JwsDecoder.decodeBase64(text, 0, text.length());
+    }
+
+    private static void assertDecodeFails(String text) {
+        try {
+            decode(text);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("Decoded " + text);
+    }
+
+    private void assertPayloadFails(String jws) {
+        try {
+            decoder.decode(jws);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("Decoded " + jws);
+    }
+
+    private static String jws(String payload) {
+        return base64Url(HEADER) + '.' + base64Url(payload) + '.' + base64Url("signature");
+    }
+
+    private static String base64Url(String text) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        byte[] bytes;
+        try {
+            bytes = text.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+        StringBuilder sb = new StringBuilder();
+        int bits = 0;
+        int bitCount = 0;
+        for (byte b : bytes) {
+            bits = (bits << 8) | (b & 0xff);
+            bitCount += 8;
+            while (bitCount >= 6) {
+                bitCount -= 6;
+                sb.append(alphabet.charAt((bits >> bitCount) & 0x3f));
+            }
+        }
+        if (bitCount > 0) {
+            sb.append(alphabet.charAt((bits << (6 - bitCount)) & 0x3f));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.leirens.jens.rootchecklib;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignatureDatabaseTest {
+
+    private KeyPair keys;
+
+    @Before
+    public void setUp() throws GeneralSecurityException {
+        keys = generate("EC", 256);
+    }
+
+    @Test
+    public void readsTheSectionsOfASignedFile() throws IOException {
+        byte[] file = new SignatureDatabaseWriter(7)
+                .add(SignatureSet.ROOT_MANAGEMENT_APPS, "com.example.root")
+                .add(SignatureSet.PROTECTED_MOUNTS, "/VENDOR")
+                .add(SignatureSet.DANGEROUS_PROPS, "low ro.example=1")
+                .toByteArray(keys.getPrivate());
+        SignatureDatabase database = read(file, keys.getPublic());
+
+        assertEquals(7, database.getVersion());
+        assertTrue(database.contains(SignatureSet.ROOT_MANAGEMENT_APPS, "com.example.root"));
+        // the signatures of the file come after the built-in ones
+        List<String> apps = database.get(SignatureSet.ROOT_MANAGEMENT_APPS);
+        assertEquals(apps.size() - 1, database.indexOf(SignatureSet.ROOT_MANAGEMENT_APPS, "com.example.root"));
+        assertTrue(database.contains(SignatureSet.PROTECTED_MOUNTS, "/vendor"));
+        assertEquals(defaults().getPropertyRules().size() + 1, database.getPropertyRules().size());
+    }
+
+    @Test
+    public void keepsTheBuiltInListsWhenSectionsAreEmptyOrMissing() throws IOException {
+        byte[] file = new SignatureDatabaseWriter(Long.MAX_VALUE)
+                .add(SignatureSet.ROOT_MANAGEMENT_APPS)
+                .add(SignatureSet.ROOT_BINARIES)
+                .toByteArray(keys.getPrivate());
+        SignatureDatabase database = read(file, keys.getPublic());
+
+        for (SignatureSet set : SignatureSet.values()) {
+            assertEquals(defaults().get(set), database.get(set));
+        }
+    }
+
+    @Test
+    public void doesNotRepeatABuiltInSignature() throws IOException {
+        String builtIn = defaults().get(SignatureSet.SU_PATHS).get(2);
+        byte[] file = new SignatureDatabaseWriter(1)
+                .add(SignatureSet.SU_PATHS, builtIn)
+                .toByteArray(keys.getPrivate());
+        SignatureDatabase database = read(file, keys.getPublic());
+
+        assertEquals(defaults().get(SignatureSet.SU_PATHS), database.get(SignatureSet.SU_PATHS));
+    }
+
+    @Test
+    public void acceptsAnRsaKey() throws Exception {
+        KeyPair rsa = generate("RSA", 2048);
+        byte[] file = new SignatureDatabaseWriter(2).add(SignatureSet.SU_PATHS, "/example/").toByteArray(rsa.getPrivate());
+        assertTrue(read(file, rsa.getPublic()).contains(SignatureSet.SU_PATHS, "/example/"));
+    }
+
+    @Test
+    public void changesTheFingerprintWithTheContents() throws IOException {
+        SignatureDatabase one = read(new SignatureDatabaseWriter(1).add(SignatureSet.SU_PATHS, "/a/")
+                .toByteArray(keys.getPrivate()), keys.getPublic());
+        SignatureDatabase two = read(new SignatureDatabaseWriter(1).add(SignatureSet.SU_PATHS, "/b/")
+                .toByteArray(keys.getPrivate()), keys.getPublic());
+        assertFalse(one.getFingerprint() == two.getFingerprint());
+        assertFalse(one.getFingerprint() == defaults().getFingerprint());
+    }
+
+    @Test
+    public void skipsSectionsOfNewerLibraries() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, 3, 2);
+        out.writeUTF("future_section");
+        out.writeInt(1);
+        out.writeUTF("anything");
+        out.writeUTF(SignatureSet.SU_PATHS.getSectionName());
+        out.writeInt(1);
+        out.writeUTF("/example/");
+        SignatureDatabase database = read(sign(bytes.toByteArray(), keys.getPrivate()), keys.getPublic());
+
+        assertEquals(3, database.getVersion());
+        assertTrue(database.contains(SignatureSet.SU_PATHS, "/example/"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherKey() throws Exception {
+        byte[] file = new SignatureDatabaseWriter(1).toByteArray(keys.getPrivate());
+        read(file, generate("EC", 256).getPublic());
+    }
+
+    @Test
+    public void rejectsAnyChangedByte() throws IOException {
+        byte[] file = new SignatureDatabaseWriter(1).add(SignatureSet.SU_PATHS, "/example/")
+                .toByteArray(keys.getPrivate());
+        for (int i = 0; i < file.length; i++) {
+            byte[] changed = file.clone();
+            changed[i] ^= 0x01;
+            assertRejected(changed);
+        }
+    }
+
+    @Test
+    public void rejectsATruncatedFile() throws IOException {
+        byte[] file = new SignatureDatabaseWriter(1).add(SignatureSet.SU_PATHS, "/example/")
+                .toByteArray(keys.getPrivate());
+        for (int length = 0; length < file.length; length++) {
+            assertRejected(Arrays.copyOf(file, length));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAnotherFormatVersion() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(SignatureDatabase.MAGIC);
+        out.writeInt(SignatureDatabase.FORMAT_VERSION + 1);
+        out.writeLong(1);
+        out.writeInt(0);
+        read(sign(bytes.toByteArray(), keys.getPrivate()), keys.getPublic());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsANegativeEntryCount() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeHeader(out, 1, 1);
+        out.writeUTF(SignatureSet.SU_PATHS.getSectionName());
+        out.writeInt(-1);
+        read(sign(bytes.toByteArray(), keys.getPrivate()), keys.getPublic());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsMoreThan64RootBinaries() throws IOException {
+        String[] binaries = new String[64];
+        for (int i = 0; i < binaries.length; i++) {
+            binaries[i] = "binary" + i;
+        }
+        byte[] file = new SignatureDatabaseWriter(1).add(SignatureSet.ROOT_BINARIES, binaries)
+                .toByteArray(keys.getPrivate());
+        read(file, keys.getPublic());
+    }
+
+    private void assertRejected(byte[] file) {
+        try {
+            read(file, keys.getPublic());
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError("Accepted a file of " + file.length + " bytes");
+    }
+
+    private static SignatureDatabase defaults() {
+        return SignatureDatabase.getDefaults();
+    }
+
+    private static SignatureDatabase read(byte[] file, PublicKey key) throws IOException {
+        return SignatureDatabase.read(new ByteArrayInputStream(file), key);
+    }
+
+    private static void writeHeader(DataOutputStream out, long version, int sectionCount) throws IOException {
+        out.write(SignatureDatabase.MAGIC);
+        out.writeInt(SignatureDatabase.FORMAT_VERSION);
+        out.writeLong(version);
+        out.writeInt(sectionCount);
+    }
+
+    /**
+     * Signs contents that the writer would not produce
+     */
+    private static byte[] sign(byte[] contents, PrivateKey key) throws GeneralSecurityException, IOException {
+        Signature signer = Signature.getInstance("SHA256withECDSA");
+        signer.initSign(key);
+        signer.update(contents);
+        byte[] signature = signer.sign();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(contents);
+        out.write(signature);
+        out.writeInt(signature.length);
+        return bytes.toByteArray();
+    }
+
+    private static KeyPair generate(String algorithm, int size) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+        generator.initialize(size);
+        return generator.generateKeyPair();
+    }
+}